@@ -1,7 +1,13 @@
 package de.rccookie.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -11,113 +17,312 @@ import org.jetbrains.annotations.Nullable;
  * Generic implementation of {@link Future} without specifying the
  * works of {@link #waitFor()}.
  *
+ * <p>The whole state of the future is kept in a single atomic field, which
+ * either holds the stack of callbacks registered while the computation is
+ * still running, or the outcome of the computation once it is done. Thus,
+ * registering callbacks and completing the future never block, and are safe
+ * to be called concurrently from any thread.</p>
+ *
  * @param <V> Content type
  */
 abstract class AbstractFutureImpl<V> implements FutureImpl<V> {
 
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(AbstractFutureImpl.class, "state", Object.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
-     * Whether the computation has been cancelled.
-     */
-    protected boolean canceled = false;
-    /**
-     * Whether the computation has ended, either successful
-     * or unsuccessful.
-     */
-    protected boolean done = false;
-    /**
-     * The result value.
-     */
-    protected V value = null;
-    /**
-     * The argument {@link #fail(Exception)} was called with.
-     */
-    protected Exception failCause;
-    /**
-     * The functions to be called when the result is available.
+     * Either the top {@link Callback} of the callbacks registered so far
+     * (<code>null</code> if there are none), while the computation is still
+     * running, or the {@link Outcome} of the computation once it is done.
+     * Only modified using compare-and-set.
      */
-    protected final List<Consumer<? super V>> onThen = new ArrayList<>();
+    private volatile Object state = null;
+
     /**
-     * The functions to be called when the result gets cancelled.
+     * The executor for async continuations, or <code>null</code> to use the default executor.
      */
-    protected final List<Consumer<? super Exception>> onExcept = new ArrayList<>();
+    private volatile Executor continuationExecutor = null;
 
 
     @Override
     public boolean cancel() {
-        boolean out = !canceled && !done;
-        canceled = done = true;
-        failCause = null;
-        if(out) {
-            for(Consumer<? super Exception> handler : onExcept)
-                handler.accept(null);
-            onThen.clear();
-            onExcept.clear();
-        }
-        return out;
+        return tryFinish(new Outcome<>(null, null, true));
     }
 
     @Override
     public boolean isCanceled() {
-        return canceled;
+        Object state = this.state;
+        return state instanceof Outcome && ((Outcome<?>) state).failed;
     }
 
     @Override
     public boolean isDone() {
-        return done;
+        return state instanceof Outcome;
     }
 
     @Override
     public V get() throws IllegalStateException {
-        if(!done) throw new IllegalStateException("Result is not yet computed");
-        if(canceled) throw new IllegalStateException("Execution has been canceled", failCause);
-        return value;
+        Object state = this.state;
+        if(!(state instanceof Outcome)) throw new IllegalStateException("Result is not yet computed");
+        @SuppressWarnings("unchecked")
+        Outcome<V> outcome = (Outcome<V>) state;
+        if(outcome.failed) throw new IllegalStateException("Execution has been canceled", outcome.cause);
+        return outcome.value;
+    }
+
+    /**
+     * Returns the argument {@link #fail(Exception)} was called with, if this future
+     * has failed.
+     *
+     * @return The failure cause, or <code>null</code> if the future is not done, has
+     *         completed successfully or was cancelled without a cause
+     */
+    @Nullable
+    protected Exception failCause() {
+        Object state = this.state;
+        return state instanceof Outcome ? ((Outcome<?>) state).cause : null;
     }
 
     @Override
     public Future<V> then(Consumer<? super V> action) {
         Arguments.checkNull(action, "action");
-        if(!done)
-            onThen.add(action);
-        else if(!canceled)
-            action.accept(value);
+        Outcome<V> outcome = push(new Callback(action, null, null, null));
+        if(outcome != null && !outcome.failed)
+            action.accept(outcome.value);
         return this;
     }
 
     @Override
     public Future<V> except(Consumer<? super Exception> handler) {
         Arguments.checkNull(handler, "handler");
-        if(!done) onExcept.add(handler);
-        else if(canceled)
-            handler.accept(failCause);
+        Outcome<V> outcome = push(new Callback(null, handler, null, null));
+        if(outcome != null && outcome.failed)
+            handler.accept(outcome.cause);
         return this;
     }
 
     @Override
     public void complete(V value) throws IllegalStateException {
-        if(isDone()) throw new IllegalStateException("The value cannot be set because the computation is already done");
-        this.value = value;
-        done = true;
-        for(Consumer<? super V> a : onThen)
-            a.accept(value);
-        onThen.clear();
-        onExcept.clear();
+        if(!tryComplete(value))
+            throw new IllegalStateException("The value cannot be set because the computation is already done");
+    }
+
+    /**
+     * Sets the result of the future, if it is not done yet.
+     *
+     * @param value The result to set
+     * @return Whether the result was set, <code>false</code> if the future was already done
+     */
+    protected boolean tryComplete(V value) {
+        return tryFinish(new Outcome<>(value, null, false));
     }
 
     @Override
     public boolean fail(@Nullable Exception cause) throws IllegalStateException {
-        if(canceled) return false;
-        if(done) throw new IllegalStateException("Result already computed");
-        canceled = done = true;
-        failCause = cause;
-        if(cause != null && onExcept.isEmpty()) {
+        if(tryFail(cause))
+            return true;
+        if(isCanceled()) return false;
+        throw new IllegalStateException("Result already computed");
+    }
+
+    /**
+     * Fails the future with the given cause, if it is not done yet.
+     *
+     * @param cause The reason why the computation was cancelled, <code>null</code>
+     *              is interpreted as cancellation
+     * @return Whether the future was failed, <code>false</code> if it was already done
+     */
+    protected boolean tryFail(@Nullable Exception cause) {
+        return tryFinish(new Outcome<>(null, cause, true));
+    }
+
+    /**
+     * Runs the given action once this future is done, regardless of whether it completed
+     * successfully, failed or was cancelled. Unlike handlers registered using {@link #except(Consumer)},
+     * such an action does not count as handling a failure.
+     *
+     * @param action The action to run
+     */
+    void whenDone(Runnable action) {
+        Arguments.checkNull(action, "action");
+        if(push(new Callback(null, null, action, null)) != null)
+            action.run();
+    }
+
+    /**
+     * Blocks the calling thread until this future is done. Interrupts do not abort
+     * waiting, but the interrupt status of the thread is restored afterwards.
+     */
+    protected void awaitDone() {
+        if(isDone()) return;
+        Thread waiter = Thread.currentThread();
+        Callback node = new Callback(null, null, null, waiter);
+        if(push(node) != null)
+            return;
+        boolean interrupted = false;
+        while(!node.released) {
+            LockSupport.park(this);
+            interrupted |= Thread.interrupted();
+        }
+        if(interrupted)
+            waiter.interrupt();
+    }
+
+    /**
+     * Blocks the calling thread until this future is done, or the given time has passed.
+     * Interrupts do not abort waiting, but the interrupt status of the thread is restored
+     * afterwards.
+     *
+     * @param nanos The maximum time to wait, in nanoseconds
+     * @return Whether the future is done
+     */
+    protected boolean awaitDone(long nanos) {
+        if(isDone()) return true;
+        Thread waiter = Thread.currentThread();
+        Callback node = new Callback(null, null, null, waiter);
+        if(push(node) != null)
+            return true;
+        long deadline = System.nanoTime() + nanos;
+        boolean interrupted = false;
+        while(!node.released && nanos > 0) {
+            LockSupport.parkNanos(this, nanos);
+            interrupted |= Thread.interrupted();
+            nanos = deadline - System.nanoTime();
+        }
+        if(interrupted)
+            waiter.interrupt();
+        if(node.released)
+            return true;
+        node.waiter = null;
+        removeDeadWaiters();
+        return isDone();
+    }
+
+    /**
+     * Registers the given callback, unless the future is already done.
+     *
+     * @param callback The callback to register
+     * @return <code>null</code> if the callback was registered and will be run
+     *         upon completion, otherwise the outcome of the future
+     */
+    @SuppressWarnings("unchecked")
+    private Outcome<V> push(Callback callback) {
+        while(true) {
+            Object state = this.state;
+            if(state instanceof Outcome)
+                return (Outcome<V>) state;
+            callback.next = (Callback) state;
+            if(STATE.compareAndSet(this, state, callback))
+                return null;
+        }
+    }
+
+    /**
+     * Unlinks the nodes of threads which stopped waiting after a timeout from the stack of
+     * callbacks, such that repeated timed waits do not accumulate nodes. Other callbacks
+     * are never unlinked, and nodes unlinked concurrently to completion are skipped by
+     * {@link #tryFinish(Outcome)} anyway.
+     */
+    private void removeDeadWaiters() {
+        retry:
+        while(true) {
+            Object state = this.state;
+            if(state == null || state instanceof Outcome)
+                return;
+            @SuppressWarnings("unchecked")
+            Callback top = (Callback) state;
+            for(Callback pred = null, c = top, next; c != null; c = next) {
+                next = c.next;
+                if(!c.isDead())
+                    pred = c;
+                else if(pred != null) {
+                    pred.next = next;
+                    if(pred.isDead()) // Predecessor died in the meantime
+                        continue retry;
+                }
+                else if(!STATE.compareAndSet(this, c, next))
+                    continue retry;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Sets the outcome of the future, if it is not done yet, and runs all
+     * registered callbacks in the order they were registered.
+     *
+     * @param outcome The outcome to set
+     * @return Whether the outcome was set
+     */
+    private boolean tryFinish(Outcome<V> outcome) {
+        Object state;
+        do {
+            state = this.state;
+            if(state instanceof Outcome)
+                return false;
+        } while(!STATE.compareAndSet(this, state, outcome));
+
+        // Collect the stack to run the callbacks in registration order. The links are not
+        // modified, as removeDeadWaiters() may still be traversing them.
+        @SuppressWarnings("unchecked")
+        Callback top = (Callback) state;
+        List<Callback> callbacks = new ArrayList<>();
+        boolean handled = false;
+        for(Callback c = top; c != null; c = c.next) {
+            if(!c.isDead()) {
+                callbacks.add(c);
+                handled |= c.except != null;
+            }
+        }
+
+        if(outcome.failed && outcome.cause != null && !handled) {
             Console.warn("Uncaught exception in future:");
-            Console.warn(cause);
+            Console.warn(outcome.cause);
+        }
+        try {
+            for(int i = callbacks.size() - 1; i >= 0; i--) {
+                try {
+                    callbacks.get(i).run(outcome);
+                } catch(Exception e) {
+                    Console.warn("Exception in future callback:");
+                    Console.warn(e);
+                }
+            }
+        } finally {
+            // Waiting threads are only released once all callbacks have run, such that they
+            // observe their effects. A failing callback still cannot strand them.
+            for(Callback c : callbacks)
+                c.release();
         }
-        else for(Consumer<? super Exception> handler : onExcept)
-            handler.accept(cause);
         return true;
     }
 
+    @Override
+    public Executor getContinuationExecutor() {
+        Executor executor = continuationExecutor;
+        return executor != null ? executor : ThreadedFutureImpl.DEFAULT_EXECUTOR;
+    }
+
+    @Override
+    public Future<V> continueOn(Executor executor) {
+        continuationExecutor = Arguments.checkNull(executor, "executor");
+        return this;
+    }
+
+    @Override
+    public V waitFor(long timeout, TimeUnit unit) throws TimeoutException, IllegalStateException {
+        Arguments.checkNull(unit, "unit");
+        if(!awaitDone(unit.toNanos(timeout)))
+            throw new TimeoutException("Result was not computed within " + timeout + " " + unit.name().toLowerCase());
+        return get();
+    }
+
     @Override
     public <T> Future<T> map(Function<? super V, ? extends T> mapper) {
         return flatMap(r -> Future.of(mapper.apply(r)));
@@ -128,53 +333,98 @@ abstract class AbstractFutureImpl<V> implements FutureImpl<V> {
         return new FlatMappedFutureImpl<>(this, mapper);
     }
 
+
+    /**
+     * The final state of a future.
+     */
+    private static final class Outcome<V> {
+        final V value;
+        final Exception cause;
+        /**
+         * Whether the computation failed or was cancelled.
+         */
+        final boolean failed;
+
+        Outcome(V value, Exception cause, boolean failed) {
+            this.value = value;
+            this.cause = cause;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * A registered callback, and the link to the callback registered before it. Exactly
+     * one of the four fields is non-null, except for waiter nodes whose thread stopped
+     * waiting, which have all fields <code>null</code>. Waiter nodes are not run, but
+     * {@linkplain #release() released} after all other callbacks have run.
+     */
+    private final class Callback {
+        final Consumer<? super V> then;
+        final Consumer<? super Exception> except;
+        final Runnable done;
+        volatile Thread waiter;
+        volatile Callback next;
+        /**
+         * Whether the waiting thread may continue.
+         */
+        volatile boolean released = false;
+
+        Callback(Consumer<? super V> then, Consumer<? super Exception> except, Runnable done, Thread waiter) {
+            this.then = then;
+            this.except = except;
+            this.done = done;
+            this.waiter = waiter;
+        }
+
+        /**
+         * Returns whether this is the node of a thread which stopped waiting.
+         */
+        boolean isDead() {
+            return waiter == null && then == null && except == null && done == null;
+        }
+
+        void run(Outcome<V> outcome) {
+            if(done != null)
+                done.run();
+            else if(outcome.failed) {
+                if(except != null)
+                    except.accept(outcome.cause);
+            }
+            else if(then != null)
+                then.accept(outcome.value);
+        }
+
+        void release() {
+            released = true;
+            Thread waiter = this.waiter;
+            if(waiter != null)
+                LockSupport.unpark(waiter);
+        }
+    }
+
     static class FlatMappedFutureImpl<I,O> extends AbstractFutureImpl<O> {
 
         final Future<I> input;
-        Future<O> secondComputation;
-        private final Object lock = new Object();
 
         public FlatMappedFutureImpl(Future<I> input, Function<? super I, ? extends Future<O>> mapper) {
             this.input = input;
             input.then(v -> {
-                synchronized(lock) {
-                    secondComputation = mapper.apply(v);
-                    for (Consumer<? super O> action : onThen)
-                        secondComputation.then(action);
-                    for (Consumer<? super Exception> handler : onExcept)
-                        secondComputation.except(handler);
-                    onThen.clear();
-                    onExcept.clear();
+                try {
+                    Future<O> second = mapper.apply(v);
+                    second.then(this::tryComplete);
+                    second.except(this::tryFail);
+                } catch(Exception e) {
+                    tryFail(e);
                 }
             });
-            input.except(this::fail);
+            input.except(this::tryFail);
         }
 
         @Override
         public O waitFor() throws IllegalStateException, UnsupportedOperationException {
-            input.waitFor(); // Calls 'then' action
-            assert secondComputation != null;
-            return secondComputation.waitFor();
-        }
-
-        @Override
-        public Future<O> then(Consumer<? super O> action) {
-            synchronized(lock) {
-                if(secondComputation == null)
-                    return super.then(action);
-            }
-            secondComputation.then(action);
-            return this;
-        }
-
-        @Override
-        public Future<O> except(Consumer<? super Exception> handler) {
-            synchronized(lock) {
-                if(secondComputation == null)
-                    return super.except(handler);
-            }
-            secondComputation.except(handler);
-            return this;
+            input.waitFor(); // May compute the input on this thread
+            awaitDone();
+            return get();
         }
     }
 }
@@ -0,0 +1,84 @@
+package de.rccookie.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy buffer recording accesses to elements from many threads, to be applied to a
+ * non-thread-safe structure by one thread at a time. Recording an access never blocks;
+ * if the buffer of the calling thread is full, the access is dropped. Losing some
+ * accesses is fine for eviction policies, as they only need to approximate recency
+ * and frequency.
+ *
+ * @param <E> The type of the accessed elements
+ */
+final class AccessBuffer<E> {
+
+    private static final int STRIPE_SIZE = 64;
+    /**
+     * Number of pending accesses in a stripe after which the buffer should be drained.
+     */
+    private static final int DRAIN_THRESHOLD = STRIPE_SIZE / 2;
+
+    private final Stripe<E>[] stripes;
+
+    AccessBuffer() {
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        @SuppressWarnings("unchecked")
+        Stripe<E>[] stripes = (Stripe<E>[]) new Stripe<?>[Math.min(count, 64)];
+        this.stripes = stripes;
+        for(int i = 0; i < stripes.length; i++)
+            stripes[i] = new Stripe<>();
+    }
+
+    /**
+     * Records an access to the given element.
+     *
+     * @param element The element that was accessed
+     * @return Whether the buffer should be drained soon
+     */
+    boolean record(E element) {
+        Stripe<E> stripe = stripes[(int) mix(Thread.currentThread().getId()) & (stripes.length - 1)];
+        long write = stripe.writes.get();
+        long pending = write - stripe.reads;
+        if(pending >= STRIPE_SIZE)
+            return true;
+        if(stripe.writes.compareAndSet(write, write + 1))
+            stripe.buffer.lazySet((int) (write & (STRIPE_SIZE - 1)), element);
+        return pending >= DRAIN_THRESHOLD;
+    }
+
+    /**
+     * Passes all recorded accesses to the given consumer and removes them from the buffer.
+     * Must only be called by one thread at a time.
+     *
+     * @param action The action to apply to each accessed element
+     */
+    void drain(Consumer<? super E> action) {
+        for(Stripe<E> stripe : stripes) {
+            long write = stripe.writes.get();
+            for(long read = stripe.reads; read < write; read++) {
+                int index = (int) (read & (STRIPE_SIZE - 1));
+                E element = stripe.buffer.getAndSet(index, null);
+                if(element == null) break; // Claimed but not yet written, continue next time
+                stripe.reads = read + 1;
+                action.accept(element);
+            }
+        }
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        return x ^ (x >>> 33);
+    }
+
+    private static final class Stripe<E> {
+        final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+        final AtomicLong writes = new AtomicLong();
+        /**
+         * Only modified by the draining thread.
+         */
+        volatile long reads = 0;
+    }
+}
@@ -1,27 +1,220 @@
 package de.rccookie.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
 
+/**
+ * A map which generates the value for a key when it is requested using {@link #get(Object)}
+ * but not present yet.
+ *
+ * <p>By default, a cache is unbounded. Using {@link #builder(Function)}, a cache can be
+ * limited to a maximum number of entries, or a maximum total weight of its entries. When
+ * that limit is exceeded, entries are evicted as selected by the cache's {@link EvictionPolicy}.
+ * The default policy, {@link EvictionPolicy#windowTinyLfu()}, takes both recency and frequency
+ * of use into account, such that frequently used entries stay in the cache even if many keys
+ * are requested only once.</p>
+ *
+ * <p>Entries can also expire a fixed time after they were written or last read, and can be
+ * refreshed in the background once they reach a certain age, such that readers keep getting
+ * the old value instead of waiting for the new one. To reduce the memory footprint of a cache,
+ * values can be held by soft or weak references, the cache can be shrunk when the heap is
+ * running full, and evicted values can be moved to a second tier outside of the Java heap.</p>
+ *
+ * <p>Caches are not thread-safe by default. A cache created with {@link Builder#concurrent()}
+ * can be shared between threads: reads of present entries never block, and concurrent
+ * requests for the same missing key generate the value only once, while values of
+ * different keys can be generated in parallel.</p>
+ *
+ * <p>Expired entries and entries whose value has been garbage collected are removed lazily,
+ * thus they may still be counted by {@link #size()} and be contained in the views of the
+ * cache, with collected values being <code>null</code>. Use {@link #cleanUp()} to remove
+ * them immediately.</p>
+ *
+ * <p>Hits, misses, loads and evictions can be recorded using {@link Builder#recordStats()}.</p>
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
 public class Cache<K, V> implements Map<K, V> {
 
-    private final Map<K,V> data;
+    /**
+     * Duration used for features which are disabled.
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final Map<K,Node<K,V>> data;
     private final Function<? super K,? extends V> generator;
+    private final boolean concurrent;
+
+    private final long maxWeight;
+    @Nullable
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    @Nullable
+    private final EvictionPolicy<K> policy;
+    @Nullable
+    private final RemovalListener<? super K, ? super V> removalListener;
+
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final boolean timed;
+    private final Executor executor;
+
+    /**
+     * Whether values are held softly (<code>true</code>) or weakly (<code>false</code>),
+     * only relevant if {@link #collected} is not <code>null</code>.
+     */
+    private final boolean softValues;
+    /**
+     * The queue of references to values that have been garbage collected, <code>null</code>
+     * if values are held strongly.
+     */
+    @Nullable
+    private final ReferenceQueue<V> collected;
+    @Nullable
+    private final SpillStore<K> spill;
+    @Nullable
+    private final Codec<V> codec;
+
+    /**
+     * Guards the total weight, the eviction policy, the expiration orders, the spill tier
+     * and the bookkeeping state of the nodes. <code>null</code> if the cache is not concurrent.
+     */
+    @Nullable
+    private final ReentrantLock lock;
+    /**
+     * Accesses to be applied to the eviction policy and the access order, <code>null</code>
+     * if the cache is not concurrent or neither of them is used.
+     */
+    @Nullable
+    private final AccessBuffer<Node<K,V>> accesses;
+    /**
+     * The nodes in the order they were written, <code>null</code> if entries don't expire
+     * after write. Removed nodes are only removed from the queue once they reach its head.
+     */
+    @Nullable
+    private final ArrayDeque<Node<K,V>> writeOrder;
+    /**
+     * The nodes in access order, <code>null</code> if entries don't expire after access.
+     */
+    @Nullable
+    private final LinkedHashMap<Node<K,V>,Boolean> accessOrder;
+    private long totalWeight = 0;
+    private volatile boolean shrinkRequested = false;
+    @Nullable
+    private final StatsRecorder stats;
+
+    private Set<K> keySet = null;
+    private Collection<V> values = null;
+    private Set<Entry<K,V>> entrySet = null;
 
     public Cache(@NotNull Function<? super K,? extends V> generator) {
-        data = new HashMap<>();
-        this.generator = Arguments.checkNull(generator, "generator");
+        this(builder(generator));
     }
 
     public Cache(@NotNull Function<? super K,? extends V> generator, @NotNull Map<? extends K, ? extends V> map) {
-        data = new HashMap<>(map);
-        this.generator = Arguments.checkNull(generator, "generator");
+        this(generator);
+        putAll(map);
+    }
+
+    /**
+     * Creates a new cache with the configuration of the given builder.
+     *
+     * @param builder The configuration of the cache
+     */
+    protected Cache(@NotNull Builder<K,V> builder) {
+        concurrent = builder.concurrent;
+        data = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        lock = concurrent ? new ReentrantLock() : null;
+        generator = builder.generator;
+        maxWeight = builder.maxWeight;
+        weigher = builder.weigher;
+        removalListener = builder.removalListener;
+        if(maxWeight == Long.MAX_VALUE)
+            policy = null;
+        else {
+            policy = builder.policy != null ? builder.policy : EvictionPolicy.windowTinyLfu();
+            policy.initialize(maxWeight);
+        }
+
+        expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        timed = expireAfterWriteNanos != NEVER || expireAfterAccessNanos != NEVER || refreshAfterWriteNanos != NEVER;
+        executor = builder.executor;
+        writeOrder = expireAfterWriteNanos != NEVER ? new ArrayDeque<>() : null;
+        accessOrder = expireAfterAccessNanos != NEVER ? new LinkedHashMap<>(16, 0.75f, true) : null;
+        accesses = concurrent && (policy != null || accessOrder != null) ? new AccessBuffer<>() : null;
+
+        softValues = builder.softValues;
+        collected = builder.referenceValues ? new ReferenceQueue<>() : null;
+        codec = builder.codec;
+        if(codec == null)
+            spill = null;
+        else if(builder.spillFile != null)
+            spill = SpillStore.mapped(builder.spillFile, builder.spillCapacity);
+        else spill = SpillStore.offHeap(builder.spillCapacity);
+
+        stats = builder.recordStats ? new StatsRecorder(builder.statsName) : null;
+
+        if(builder.memoryPressure)
+            MemoryPressure.register(this);
+    }
+
+    /**
+     * Returns a builder for a cache with the given generator.
+     *
+     * @param generator The function to generate missing values
+     * @param <K> The key type
+     * @param <V> The value type
+     * @return A new cache builder
+     */
+    public static <K,V> Builder<K,V> builder(@NotNull Function<? super K,? extends V> generator) {
+        return new Builder<>(generator);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("{");
+        for(Node<K,V> node : data.values()) {
+            if(str.length() != 1) str.append(", ");
+            V value = node.value();
+            str.append(node.key == this ? "(this Map)" : node.key).append('=').append(value == this ? "(this Map)" : value);
+        }
+        return str.append('}').toString();
     }
 
     @Override
@@ -36,56 +229,1383 @@ public class Cache<K, V> implements Map<K, V> {
 
     @Override
     public boolean containsKey(Object key) {
-        return data.containsKey(key);
+        Node<K,V> node = data.get(key);
+        return node != null && !isStale(node, node.value(), now());
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return data.containsValue(value);
+        long now = now();
+        for(Node<K,V> node : data.values()) {
+            V v = node.value();
+            if(Objects.equals(v, value) && !isStale(node, v, now))
+                return true;
+        }
+        return false;
     }
 
+    /**
+     * Returns the value for the given key. If the key is not present in the cache yet,
+     * the value gets generated and stored in the cache, unless it is <code>null</code>.
+     * If the cache is concurrent, the value for a key is generated at most once at a time,
+     * and the generator must not modify this cache.
+     *
+     * <p>If the entry is older than the refresh time of the cache, a new value gets generated
+     * in the background, while the current value is returned immediately.</p>
+     *
+     * @param key The key to get the value for
+     * @return The value for the key
+     */
     @SuppressWarnings("unchecked")
     @Override
     public V get(Object key) {
-        return data.computeIfAbsent((K) key, generator);
+        if(shrinkRequested)
+            cleanUp();
+        Node<K,V> node = data.get(key);
+        if(node != null) {
+            long now = now();
+            V value = node.value();
+            if(!isStale(node, value, now) && value != null) {
+                if(expireAfterAccessNanos != NEVER)
+                    node.accessTime = now;
+                recordAccess(node);
+                if(refreshAfterWriteNanos != NEVER && now - node.writeTime >= refreshAfterWriteNanos)
+                    refresh(node);
+                if(stats != null)
+                    stats.recordHit();
+                return value;
+            }
+            if(value != null || node instanceof ReferenceNode)
+                invalidate(node, value == null ? RemovalCause.COLLECTED : RemovalCause.EXPIRED);
+        }
+        return load((K) key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V load(K key) {
+        if(stats != null)
+            stats.recordMiss();
+        if(!concurrent) {
+            long now = now();
+            long[] writeTime = { now };
+            V value = loadValue(key, writeTime);
+            if(value == null) return null;
+            Node<K,V> node = newNode(key, value, writeTime[0]);
+            node.accessTime = now;
+            afterWrite(key, data.put(key, node), node, RemovalCause.REPLACED, true);
+            return value;
+        }
+        // Only the thread which actually inserted the node must do the bookkeeping.
+        // The value is also kept strongly here such that it cannot be collected before
+        // it is returned.
+        Object[] loaded = { null, null };
+        Node<K,V> node = data.computeIfAbsent(key, k -> {
+            long now = now();
+            long[] writeTime = { now };
+            V value = loadValue(k, writeTime);
+            if(value == null) return null;
+            Node<K,V> n = newNode(k, value, writeTime[0]);
+            n.accessTime = now;
+            loaded[0] = n;
+            loaded[1] = value;
+            return n;
+        });
+        if(node == null)
+            return null;
+        if(loaded[0] == node) {
+            afterWrite(key, null, node, null, true);
+            return (V) loaded[1];
+        }
+        // Loaded concurrently by another thread
+        V value = node.value();
+        if(value == null)
+            return get(key);
+        recordAccess(node);
+        return value;
     }
 
     @Nullable
     @Override
     public V put(K key, V value) {
-        return data.put(key, value);
+        if(concurrent)
+            Arguments.checkNull(value, "value");
+        Node<K,V> node = newNode(key, value, now());
+        Node<K,V> old = data.put(key, node);
+        afterWrite(key, old, node, RemovalCause.REPLACED, true);
+        return old != null ? old.value() : null;
     }
 
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if(concurrent)
+            Arguments.checkNull(value, "value");
+        Node<K,V> node = newNode(key, value, now());
+        while(true) {
+            Node<K,V> old = data.putIfAbsent(key, node);
+            if(old == null) {
+                afterWrite(key, null, node, null, true);
+                return null;
+            }
+            V oldValue = old.value();
+            if(!isStale(old, oldValue, now()))
+                return oldValue;
+            invalidate(old, oldValue == null ? RemovalCause.COLLECTED : RemovalCause.EXPIRED);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     @Override
     public V remove(Object key) {
-        return data.remove(key);
+        Node<K,V> node = data.remove(key);
+        if(node == null) {
+            if(spill != null)
+                spill.remove(key);
+            return null;
+        }
+        afterWrite((K) key, node, null, RemovalCause.EXPLICIT, true);
+        return node.value();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object key, Object value) {
+        Node<K,V> node = data.get(key);
+        if(node == null || !Objects.equals(node.value(), value) || !data.remove(key, node))
+            return false;
+        afterWrite((K) key, node, null, RemovalCause.EXPLICIT, true);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if(concurrent)
+            Arguments.checkNull(value, "value");
+        Node<K,V> node = newNode(key, value, now());
+        while(true) {
+            Node<K,V> old = data.get(key);
+            if(old == null) return null;
+            if(data.replace(key, old, node)) {
+                afterWrite(key, old, node, RemovalCause.REPLACED, true);
+                return old.value();
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if(concurrent)
+            Arguments.checkNull(newValue, "newValue");
+        Node<K,V> node = newNode(key, newValue, now());
+        while(true) {
+            Node<K,V> old = data.get(key);
+            if(old == null || !Objects.equals(old.value(), oldValue))
+                return false;
+            if(data.replace(key, old, node)) {
+                afterWrite(key, old, node, RemovalCause.REPLACED, true);
+                return true;
+            }
+        }
     }
 
     @Override
     public void putAll(@NotNull Map<? extends K, ? extends V> m) {
-        data.putAll(m);
+        m.forEach(this::put);
     }
 
+    /**
+     * Removes all entries from the cache, including the entries in the spill tier.
+     */
     @Override
     public void clear() {
-        data.clear();
+        for(Iterator<K> it = keySet().iterator(); it.hasNext();) {
+            it.next();
+            it.remove();
+        }
+        if(spill != null)
+            spill.clear();
     }
 
     @NotNull
     @Override
     public Set<K> keySet() {
-        return data.keySet();
+        if(keySet == null) keySet = new KeySet();
+        return keySet;
     }
 
     @NotNull
     @Override
     public Collection<V> values() {
-        return data.values();
+        if(values == null) values = new Values();
+        return values;
     }
 
     @NotNull
     @Override
     public Set<Entry<K, V>> entrySet() {
-        return data.entrySet();
+        if(entrySet == null) entrySet = new EntrySet();
+        return entrySet;
+    }
+
+    /**
+     * Returns the maximum total weight of the entries in this cache, which is the maximum
+     * number of entries if no weigher is used.
+     *
+     * @return The maximum weight, or {@link Long#MAX_VALUE} if this cache is unbounded
+     */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the current total weight of the entries in this cache, which is the number of
+     * entries if no weigher is used.
+     *
+     * @return The total weight of all entries
+     */
+    public long weight() {
+        if(weigher == null)
+            return data.size();
+        if(lock == null)
+            return totalWeight;
+        lock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries currently held in the spill tier of this cache, which
+     * are not counted by {@link #size()}.
+     *
+     * @return The number of spilled entries, 0 if this cache has no spill tier
+     */
+    public int spilledSize() {
+        return spill != null ? spill.size() : 0;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.
+     *
+     * @return The current statistics, or {@link CacheStats#EMPTY} if statistics are not
+     *         recorded for this cache
+     * @see Builder#recordStats()
+     */
+    @NotNull
+    public CacheStats stats() {
+        return stats != null ? stats.snapshot() : CacheStats.EMPTY;
+    }
+
+    /**
+     * Performs pending maintenance work immediately, which is otherwise done as part of
+     * writes to the cache. This removes expired entries and entries whose values have been
+     * garbage collected, and shrinks the cache after a memory pressure notification.
+     */
+    public void cleanUp() {
+        List<Removal<K,V>> removals = new ArrayList<>();
+        if(lock != null) lock.lock();
+        try {
+            maintain(removals);
+        } finally {
+            if(lock != null) lock.unlock();
+        }
+        notifyRemovals(removals);
+    }
+
+    /**
+     * Called when the heap is running full. Concurrent caches shrink immediately, other
+     * caches on their next use.
+     */
+    void onMemoryPressure() {
+        shrinkRequested = true;
+        if(concurrent) {
+            try {
+                executor.execute(this::cleanUp);
+            } catch(RejectedExecutionException e) {
+                // Will be done on next access
+            }
+        }
+    }
+
+    private long now() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    private Node<K,V> newNode(K key, V value, long writeTime) {
+        long weight = weigh(key, value);
+        if(collected == null)
+            return new Node<>(key, value, weight, writeTime);
+        return new ReferenceNode<>(key, value, weight, writeTime, softValues, collected);
+    }
+
+    private long weigh(K key, V value) {
+        if(weigher == null) return 1;
+        long weight = weigher.applyAsLong(key, value);
+        if(weight < 0)
+            throw new IllegalStateException("Weigher returned negative weight " + weight + " for key " + key);
+        return weight;
+    }
+
+    /**
+     * Returns whether the given node is expired or its value has been collected.
+     */
+    private boolean isStale(Node<K,V> node, V value, long now) {
+        if(value == null && node instanceof ReferenceNode)
+            return true;
+        return (expireAfterWriteNanos != NEVER && now - node.writeTime >= expireAfterWriteNanos)
+            || (expireAfterAccessNanos != NEVER && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    private void invalidate(Node<K,V> node, RemovalCause cause) {
+        if(data.remove(node.key, node))
+            afterWrite(node.key, node, null, cause, true);
+    }
+
+    private void refresh(Node<K,V> node) {
+        if(!node.startRefresh()) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = generate(node.key);
+                    if(value != null) {
+                        Node<K,V> fresh = newNode(node.key, value, now());
+                        if(data.replace(node.key, node, fresh))
+                            afterWrite(node.key, node, fresh, RemovalCause.REPLACED, true);
+                        return;
+                    }
+                } catch(RuntimeException e) {
+                    Console.warn("Failed to refresh cache entry for key " + node.key + ":");
+                    Console.warn(e);
+                }
+                // Allow another attempt with the next read
+                node.endRefresh();
+            });
+        } catch(RejectedExecutionException e) {
+            node.endRefresh();
+        }
+    }
+
+    private void recordAccess(Node<K,V> node) {
+        if(policy == null && accessOrder == null) return;
+        if(accesses == null)
+            applyAccess(node);
+        else if(accesses.record(node) && lock.tryLock()) {
+            List<Removal<K,V>> removals = new ArrayList<>();
+            try {
+                maintain(removals);
+            } finally {
+                lock.unlock();
+            }
+            notifyRemovals(removals);
+        }
+    }
+
+    /**
+     * Applies the given access to the eviction policy and the access order. Must be called
+     * while holding the lock.
+     */
+    private void applyAccess(Node<K,V> node) {
+        if(!node.added || node.removed) return;
+        if(policy != null)
+            policy.onAccess(node.key);
+        if(accessOrder != null)
+            accessOrder.get(node);
+    }
+
+    /**
+     * Updates the bookkeeping after the data map has been modified, and performs the
+     * maintenance. The removal listener is notified afterwards, without holding the lock.
+     *
+     * @param key The key of the modified entry
+     * @param old The node that was removed from the data map, if any
+     * @param node The node that was inserted into the data map, if any
+     * @param cause The reason why the old node was removed
+     * @param maintain Whether to perform maintenance, which may remove further entries
+     */
+    private void afterWrite(K key, @Nullable Node<K,V> old, @Nullable Node<K,V> node, RemovalCause cause, boolean maintain) {
+        List<Removal<K,V>> removals = new ArrayList<>(2);
+        if(lock != null) lock.lock();
+        try {
+            if(old != null && node != null && old.added && !old.removed && !node.removed) {
+                // Update, such that the eviction policy can keep the position of the entry
+                old.removed = node.added = true;
+                totalWeight += node.weight - old.weight;
+                if(policy != null)
+                    policy.onUpdate(key, old.weight, node.weight);
+                if(accessOrder != null) {
+                    accessOrder.remove(old);
+                    accessOrder.put(node, Boolean.TRUE);
+                }
+                if(writeOrder != null)
+                    writeOrder.add(node);
+            }
+            else {
+                if(old != null)
+                    removed(old);
+                if(node != null && !node.removed)
+                    added(node);
+            }
+            if(old != null)
+                removals.add(new Removal<>(key, old.value(), cause));
+            // Any write invalidates the spilled copy of the entry
+            if(spill != null && (node != null || cause == RemovalCause.EXPLICIT))
+                spill.remove(key);
+            if(maintain)
+                maintain(removals);
+        } finally {
+            if(lock != null) lock.unlock();
+        }
+        notifyRemovals(removals);
+    }
+
+    /**
+     * Updates the bookkeeping for the given node having been inserted into the data map.
+     * Must be called while holding the lock.
+     */
+    private void added(Node<K,V> node) {
+        node.added = true;
+        totalWeight += node.weight;
+        if(policy != null)
+            policy.onInsert(node.key, node.weight);
+        if(accessOrder != null)
+            accessOrder.put(node, Boolean.TRUE);
+        if(writeOrder != null)
+            writeOrder.add(node);
+    }
+
+    /**
+     * Updates the bookkeeping for the given node having been removed from the data map.
+     * Must be called while holding the lock.
+     */
+    private void removed(Node<K,V> node) {
+        if(node.removed) return;
+        node.removed = true;
+        if(!node.added) return;
+        totalWeight -= node.weight;
+        if(policy != null)
+            policy.onRemove(node.key, node.weight);
+        if(accessOrder != null)
+            accessOrder.remove(node);
+    }
+
+    /**
+     * Applies pending accesses, removes expired and collected entries, and evicts entries
+     * until the cache is within its bounds. Must be called while holding the lock.
+     */
+    private void maintain(List<Removal<K,V>> removals) {
+        if(accesses != null)
+            accesses.drain(this::applyAccess);
+        if(collected != null)
+            removeCollected(removals);
+        if(writeOrder != null || accessOrder != null)
+            expire(now(), removals);
+        if(shrinkRequested) {
+            shrinkRequested = false;
+            evict(totalWeight / 2, RemovalCause.MEMORY_PRESSURE, removals);
+        }
+        evict(maxWeight, RemovalCause.SIZE, removals);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removeCollected(List<Removal<K,V>> removals) {
+        Reference<? extends V> reference;
+        while((reference = collected.poll()) != null) {
+            Node<K,V> node = (Node<K,V>) ((ValueReference) reference).node();
+            if(data.remove(node.key, node)) {
+                removed(node);
+                if(stats != null)
+                    stats.recordEviction();
+                removals.add(new Removal<>(node.key, null, RemovalCause.COLLECTED));
+            }
+        }
+    }
+
+    private void expire(long now, List<Removal<K,V>> removals) {
+        if(writeOrder != null) {
+            while(!writeOrder.isEmpty()) {
+                Node<K,V> node = writeOrder.peek();
+                if(!node.removed && now - node.writeTime < expireAfterWriteNanos)
+                    break;
+                writeOrder.poll();
+                if(!node.removed && data.remove(node.key, node))
+                    expired(node, removals);
+            }
+        }
+        if(accessOrder != null) {
+            List<Node<K,V>> expired = new ArrayList<>();
+            for(Node<K,V> node : accessOrder.keySet()) {
+                // Access times are updated before the access order, so stop at the first
+                // node which is not expired even if later nodes might be
+                if(now - node.accessTime < expireAfterAccessNanos)
+                    break;
+                expired.add(node);
+            }
+            for(Node<K,V> node : expired) {
+                if(data.remove(node.key, node))
+                    expired(node, removals);
+                else accessOrder.remove(node);
+            }
+        }
+    }
+
+    private void expired(Node<K,V> node, List<Removal<K,V>> removals) {
+        removed(node);
+        if(stats != null)
+            stats.recordEviction();
+        removals.add(new Removal<>(node.key, node.value(), RemovalCause.EXPIRED));
+    }
+
+    /**
+     * Evicts entries until the total weight is at most the given limit, either as selected
+     * by the eviction policy or, if the cache is unbounded, in iteration order. Must be
+     * called while holding the lock.
+     */
+    private void evict(long limit, RemovalCause cause, List<Removal<K,V>> removals) {
+        if(totalWeight <= limit)
+            return;
+        if(policy == null) {
+            for(Iterator<Node<K,V>> it = data.values().iterator(); it.hasNext() && totalWeight > limit; ) {
+                Node<K,V> node = it.next();
+                if(!node.added || node.removed) continue;
+                it.remove();
+                evicted(node, cause, removals);
+            }
+            return;
+        }
+        while(totalWeight > limit) {
+            K victim = policy.selectVictim();
+            if(victim == null) break;
+            Node<K,V> node = data.get(victim);
+            if(node == null || !node.added || node.removed) {
+                // Stale key, e.g. from a generator which returned null
+                policy.onRemove(victim, 0);
+                continue;
+            }
+            if(!data.remove(victim, node))
+                break; // Modified concurrently, the pending bookkeeping will evict again
+            evicted(node, cause, removals);
+        }
+    }
+
+    private void evicted(Node<K,V> node, RemovalCause cause, List<Removal<K,V>> removals) {
+        removed(node);
+        if(stats != null)
+            stats.recordEviction();
+        V value = node.value();
+        removals.add(new Removal<>(node.key, value, cause));
+        if(spill != null && value != null) {
+            try {
+                spill.put(node.key, codec.encode(value), node.writeTime, node.accessTime);
+            } catch(RuntimeException e) {
+                Console.warn("Failed to spill cache entry for key " + node.key + ":");
+                Console.warn(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the value for the given key from the spill tier if present and not expired,
+     * otherwise generates it. A value taken from the spill tier keeps its write time, but
+     * counts as accessed now.
+     *
+     * @param key The key to load
+     * @param writeTime Initially the current time, set to the original write time if the
+     *                  value is taken from the spill tier
+     * @return The loaded value
+     */
+    private V loadValue(K key, long[] writeTime) {
+        if(spill == null)
+            return generate(key);
+        // Not using the lock, as this may be called while computing the data map entry
+        SpillStore.Record record = spill.remove(key);
+        long now = writeTime[0];
+        if(record != null
+            && (expireAfterWriteNanos == NEVER || now - record.writeTime < expireAfterWriteNanos)
+            && (expireAfterAccessNanos == NEVER || now - record.accessTime < expireAfterAccessNanos)) {
+            try {
+                V value = codec.decode(record.data);
+                writeTime[0] = record.writeTime;
+                return value;
+            } catch(RuntimeException e) {
+                Console.warn("Failed to decode spilled cache entry for key " + key + ":");
+                Console.warn(e);
+            }
+        }
+        return generate(key);
+    }
+
+    /**
+     * Generates the value for the given key, and records the load if statistics are enabled.
+     */
+    private V generate(K key) {
+        if(stats == null)
+            return generator.apply(key);
+        long start = System.nanoTime();
+        V value = null;
+        try {
+            return value = generator.apply(key);
+        } finally {
+            stats.recordLoad(System.nanoTime() - start, value != null);
+        }
+    }
+
+    private void notifyRemovals(List<Removal<K,V>> removals) {
+        if(removalListener == null) return;
+        for(Removal<K,V> removal : removals) {
+            try {
+                removalListener.onRemoval(removal.key, removal.value, removal.cause);
+            } catch(RuntimeException e) {
+                Console.warn("Exception in removal listener of cache:");
+                Console.warn(e);
+            }
+        }
+    }
+
+
+    /**
+     * An entry removed from the cache, for which the removal listener has to be notified.
+     */
+    private static final class Removal<K,V> {
+        final K key;
+        final V value;
+        final RemovalCause cause;
+
+        Removal(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * A value stored in the cache, together with its weight and timestamps.
+     */
+    private static class Node<K,V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+        final K key;
+        private final V value;
+        final long weight;
+        final long writeTime;
+        volatile long accessTime;
+        private volatile int refreshing = 0;
+        /**
+         * Whether the node has been accounted for in the total weight and the eviction
+         * policy, and whether it has been removed from the bookkeeping again. Guarded by
+         * the lock of the cache. A node may be removed before it was added, if the
+         * bookkeeping of different threads happens in a different order than their
+         * modifications of the data map.
+         */
+        boolean added = false, removed = false;
+
+        Node(K key, V value, long weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = this.accessTime = writeTime;
+        }
+
+        /**
+         * Returns the value of this node, or <code>null</code> if it has been garbage collected.
+         */
+        V value() {
+            return value;
+        }
+
+        /**
+         * Returns whether the calling thread may refresh this node, which is the case for
+         * at most one thread at a time.
+         */
+        boolean startRefresh() {
+            return REFRESHING.compareAndSet(this, 0, 1);
+        }
+
+        void endRefresh() {
+            refreshing = 0;
+        }
+    }
+
+    /**
+     * A node which holds its value by a soft or weak reference.
+     */
+    private static final class ReferenceNode<K,V> extends Node<K,V> {
+
+        final Reference<V> reference;
+
+        ReferenceNode(K key, V value, long weight, long writeTime, boolean soft, ReferenceQueue<V> queue) {
+            super(key, null, weight, writeTime);
+            reference = soft ? new SoftValue<>(value, queue, this) : new WeakValue<>(value, queue, this);
+        }
+
+        @Override
+        V value() {
+            return reference.get();
+        }
+    }
+
+    /**
+     * A reference to a value which knows the node it belongs to.
+     */
+    private interface ValueReference {
+        Node<?,?> node();
+    }
+
+    private static final class SoftValue<V> extends SoftReference<V> implements ValueReference {
+        private final Node<?,?> node;
+
+        SoftValue(V value, ReferenceQueue<? super V> queue, Node<?,?> node) {
+            super(value, queue);
+            this.node = node;
+        }
+
+        @Override
+        public Node<?,?> node() {
+            return node;
+        }
+    }
+
+    private static final class WeakValue<V> extends WeakReference<V> implements ValueReference {
+        private final Node<?,?> node;
+
+        WeakValue(V value, ReferenceQueue<? super V> queue, Node<?,?> node) {
+            super(value, queue);
+            this.node = node;
+        }
+
+        @Override
+        public Node<?,?> node() {
+            return node;
+        }
+    }
+
+    /**
+     * Iterates over the data map, and updates the bookkeeping of the cache when removing
+     * an entry through the iterator.
+     */
+    private abstract class DataIterator<T> implements Iterator<T> {
+
+        final Iterator<Entry<K,Node<K,V>>> it = data.entrySet().iterator();
+        Entry<K,Node<K,V>> last = null;
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        Entry<K,Node<K,V>> nextEntry() {
+            return last = it.next();
+        }
+
+        @Override
+        public void remove() {
+            if(last == null) throw new IllegalStateException();
+            if(!concurrent)
+                it.remove();
+            else if(!data.remove(last.getKey(), last.getValue())) {
+                last = null;
+                return;
+            }
+            afterWrite(last.getKey(), last.getValue(), null, RemovalCause.EXPLICIT, false);
+            last = null;
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new DataIterator<>() {
+                @Override
+                public K next() {
+                    return nextEntry().getKey();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return data.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return data.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if(!data.containsKey(o)) return false;
+            Cache.this.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            Cache.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new DataIterator<>() {
+                @Override
+                public V next() {
+                    return nextEntry().getValue().value();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return data.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            Cache.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K,V>> {
+        @Override
+        public Iterator<Entry<K,V>> iterator() {
+            return new DataIterator<>() {
+                @Override
+                public Entry<K,V> next() {
+                    Entry<K,Node<K,V>> e = nextEntry();
+                    return new CacheEntry(e.getKey(), e.getValue().value());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return data.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if(!(o instanceof Entry)) return false;
+            Entry<?,?> e = (Entry<?,?>) o;
+            Node<K,V> node = data.get(e.getKey());
+            return node != null && Objects.equals(node.value(), e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if(!contains(o)) return false;
+            Cache.this.remove(((Entry<?,?>) o).getKey());
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            Cache.this.clear();
+        }
+    }
+
+    private final class CacheEntry implements Entry<K,V> {
+        final K key;
+        V value;
+
+        CacheEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            put(key, value);
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Entry)) return false;
+            Entry<?,?> e = (Entry<?,?>) obj;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+
+    /**
+     * Builder for {@link Cache}s.
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     */
+    public static class Builder<K,V> {
+
+        private final Function<? super K,? extends V> generator;
+        private long maxWeight = Long.MAX_VALUE;
+        private ToLongBiFunction<? super K, ? super V> weigher = null;
+        private EvictionPolicy<K> policy = null;
+        private RemovalListener<? super K, ? super V> removalListener = null;
+        private boolean concurrent = false;
+        private long expireAfterWriteNanos = NEVER;
+        private long expireAfterAccessNanos = NEVER;
+        private long refreshAfterWriteNanos = NEVER;
+        private Executor executor = ThreadedFutureImpl.DEFAULT_EXECUTOR;
+        private boolean referenceValues = false;
+        private boolean softValues = false;
+        private boolean memoryPressure = false;
+        private Codec<V> codec = null;
+        private Path spillFile = null;
+        private int spillCapacity = 0;
+        private boolean recordStats = false;
+        private String statsName = null;
+
+        protected Builder(@NotNull Function<? super K,? extends V> generator) {
+            this.generator = Arguments.checkNull(generator, "generator");
+        }
+
+        /**
+         * Limits the cache to the given number of entries.
+         *
+         * @param maxSize The maximum number of entries
+         * @return This builder
+         */
+        public Builder<K,V> maxSize(@Range(from = 0) long maxSize) {
+            maxWeight = Arguments.checkRange(maxSize, 0L, null);
+            weigher = null;
+            return this;
+        }
+
+        /**
+         * Limits the cache to the given total weight of its entries. The weight of an entry
+         * is determined once when it is inserted into the cache.
+         *
+         * @param maxWeight The maximum total weight of the entries
+         * @param weigher The function to determine the weight of an entry, must not return
+         *                negative values
+         * @return This builder
+         */
+        public Builder<K,V> maxWeight(@Range(from = 0) long maxWeight, @NotNull ToLongBiFunction<? super K, ? super V> weigher) {
+            this.maxWeight = Arguments.checkRange(maxWeight, 0L, null);
+            this.weigher = Arguments.checkNull(weigher, "weigher");
+            return this;
+        }
+
+        /**
+         * Sets the policy to select which entries to evict when the cache exceeds its maximum
+         * size or weight. Defaults to {@link EvictionPolicy#windowTinyLfu()}. Each policy
+         * instance must only be used for a single cache.
+         *
+         * @param policy The eviction policy to use
+         * @return This builder
+         */
+        public Builder<K,V> eviction(@NotNull EvictionPolicy<K> policy) {
+            this.policy = Arguments.checkNull(policy, "policy");
+            return this;
+        }
+
+        /**
+         * Sets a listener to be notified whenever an entry gets removed from the cache, or
+         * its value is replaced.
+         *
+         * @param removalListener The listener to notify
+         * @return This builder
+         */
+        public Builder<K,V> removalListener(@NotNull RemovalListener<? super K, ? super V> removalListener) {
+            this.removalListener = Arguments.checkNull(removalListener, "removalListener");
+            return this;
+        }
+
+        /**
+         * Makes the cache thread-safe. Reads of present entries never block, and each missing
+         * value gets generated only once even if requested concurrently. Values of different
+         * keys can be generated in parallel. A concurrent cache does not support <code>null</code>
+         * values.
+         *
+         * @return This builder
+         */
+        public Builder<K,V> concurrent() {
+            concurrent = true;
+            return this;
+        }
+
+        /**
+         * Lets entries expire the given duration after they were inserted or their value
+         * was last replaced.
+         *
+         * @param duration The time after which entries expire
+         * @param unit The unit of the duration
+         * @return This builder
+         */
+        public Builder<K,V> expireAfterWrite(@Range(from = 1) long duration, @NotNull TimeUnit unit) {
+            expireAfterWriteNanos = Arguments.checkNull(unit, "unit").toNanos(Arguments.checkRange(duration, 1L, null));
+            return this;
+        }
+
+        /**
+         * Lets entries expire the given duration after they were last read or written.
+         *
+         * @param duration The time after which unused entries expire
+         * @param unit The unit of the duration
+         * @return This builder
+         */
+        public Builder<K,V> expireAfterAccess(@Range(from = 1) long duration, @NotNull TimeUnit unit) {
+            expireAfterAccessNanos = Arguments.checkNull(unit, "unit").toNanos(Arguments.checkRange(duration, 1L, null));
+            return this;
+        }
+
+        /**
+         * Refreshes entries in the background when they are read and older than the given
+         * duration. Until the new value is ready, the old value is returned. If the generator
+         * fails or returns <code>null</code>, the old value is kept and a warning gets logged.
+         * This implies {@link #concurrent()}.
+         *
+         * @param duration The age after which entries get refreshed
+         * @param unit The unit of the duration
+         * @return This builder
+         */
+        public Builder<K,V> refreshAfterWrite(@Range(from = 1) long duration, @NotNull TimeUnit unit) {
+            refreshAfterWriteNanos = Arguments.checkNull(unit, "unit").toNanos(Arguments.checkRange(duration, 1L, null));
+            concurrent = true;
+            return this;
+        }
+
+        /**
+         * Sets the executor to refresh entries on, and to shrink concurrent caches on after
+         * a memory pressure notification. Defaults to {@link ThreadedFutureImpl#DEFAULT_EXECUTOR}.
+         *
+         * @param executor The executor to use for background work
+         * @return This builder
+         */
+        public Builder<K,V> executor(@NotNull Executor executor) {
+            this.executor = Arguments.checkNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * Holds the values of the cache by soft references, such that the garbage collector
+         * can reclaim them when memory is running low. Collected entries are removed with
+         * {@link RemovalCause#COLLECTED}.
+         *
+         * @return This builder
+         */
+        public Builder<K,V> softValues() {
+            referenceValues = softValues = true;
+            return this;
+        }
+
+        /**
+         * Holds the values of the cache by weak references, such that they can be garbage
+         * collected as soon as they are not used outside of the cache anymore. Collected
+         * entries are removed with {@link RemovalCause#COLLECTED}.
+         *
+         * @return This builder
+         */
+        public Builder<K,V> weakValues() {
+            referenceValues = true;
+            softValues = false;
+            return this;
+        }
+
+        /**
+         * Evicts half of the entries of the cache, as selected by the eviction policy, whenever
+         * the heap usage after a garbage collection exceeds a threshold. The threshold is set to
+         * 85% of the heap memory pools, unless the application configured a collection usage
+         * threshold itself.
+         *
+         * @return This builder
+         */
+        public Builder<K,V> evictOnMemoryPressure() {
+            memoryPressure = true;
+            return this;
+        }
+
+        /**
+         * Moves entries evicted because of the size limit or memory pressure into a second tier
+         * in direct memory, outside of the Java heap. When a spilled key is requested, its value
+         * is decoded and moved back into the cache instead of being generated again. When the
+         * spill tier is full, its oldest entries are dropped.
+         *
+         * @param capacity The size of the spill tier in bytes
+         * @param codec The codec to serialize values with
+         * @return This builder
+         */
+        public Builder<K,V> spillOffHeap(@Range(from = 1) int capacity, @NotNull Codec<V> codec) {
+            this.spillCapacity = Arguments.checkRange(capacity, 1, null);
+            this.codec = Arguments.checkNull(codec, "codec");
+            this.spillFile = null;
+            return this;
+        }
+
+        /**
+         * Moves entries evicted because of the size limit or memory pressure into a second tier
+         * in the given memory-mapped file. The contents of the file are overwritten, and spilled
+         * entries do not persist beyond the lifetime of the cache.
+         *
+         * @param file The file to spill entries into
+         * @param capacity The size of the spill tier in bytes
+         * @param codec The codec to serialize values with
+         * @return This builder
+         * @see #spillOffHeap(int, Codec)
+         */
+        public Builder<K,V> spillToFile(@NotNull Path file, @Range(from = 1) int capacity, @NotNull Codec<V> codec) {
+            this.spillFile = Arguments.checkNull(file, "file");
+            this.spillCapacity = Arguments.checkRange(capacity, 1, null);
+            this.codec = Arguments.checkNull(codec, "codec");
+            return this;
+        }
+
+        /**
+         * Enables recording of statistics, which can be retrieved using {@link Cache#stats()}.
+         *
+         * @return This builder
+         */
+        public Builder<K,V> recordStats() {
+            recordStats = true;
+            return this;
+        }
+
+        /**
+         * Enables recording of statistics, which can be retrieved using {@link Cache#stats()},
+         * and includes them in {@link CacheStats#all()} under the given name.
+         *
+         * @param name The name of the cache
+         * @return This builder
+         */
+        public Builder<K,V> recordStats(@NotNull String name) {
+            statsName = Arguments.checkNull(name, "name");
+            recordStats = true;
+            return this;
+        }
+
+        /**
+         * Creates a new cache with the configuration of this builder.
+         *
+         * @return A new cache
+         */
+        public Cache<K,V> build() {
+            return new Cache<>(this);
+        }
+    }
+
+    /**
+     * Listener for entries being removed from a cache.
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     */
+    @FunctionalInterface
+    public interface RemovalListener<K,V> {
+
+        /**
+         * Called after the given entry has been removed from the cache.
+         *
+         * @param key The key of the removed entry
+         * @param value The value of the removed entry, <code>null</code> if it has been
+         *              garbage collected
+         * @param cause The reason why the entry was removed
+         */
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+    /**
+     * The reason why an entry was removed from a cache.
+     */
+    public enum RemovalCause {
+        /**
+         * The entry was removed explicitly, e.g. using {@link Cache#remove(Object)}.
+         */
+        EXPLICIT,
+        /**
+         * The value of the entry was replaced by a new value.
+         */
+        REPLACED,
+        /**
+         * The entry was evicted because the cache exceeded its maximum size or weight.
+         */
+        SIZE,
+        /**
+         * The entry expired.
+         */
+        EXPIRED,
+        /**
+         * The value of the entry was garbage collected.
+         */
+        COLLECTED,
+        /**
+         * The entry was evicted because the heap was running full.
+         */
+        MEMORY_PRESSURE
+    }
+
+    /**
+     * Converts values to bytes and back, to store them outside of the Java heap.
+     *
+     * @param <V> The value type
+     */
+    public interface Codec<V> {
+
+        /**
+         * Encodes the given value.
+         *
+         * @param value The value to encode, not <code>null</code>
+         * @return The encoded value
+         */
+        byte @NotNull [] encode(@NotNull V value);
+
+        /**
+         * Decodes a value previously encoded by {@link #encode(Object)}.
+         *
+         * @param data The encoded value
+         * @return The decoded value
+         */
+        @NotNull
+        V decode(byte @NotNull [] data);
+
+
+        /**
+         * Returns a codec which uses Java serialization. The values must be {@link java.io.Serializable}.
+         *
+         * @param <V> The value type
+         * @return A codec using Java serialization
+         */
+        static <V> Codec<V> serializable() {
+            return new Codec<>() {
+                @Override
+                public byte @NotNull [] encode(@NotNull V value) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                        out.writeObject(value);
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return bytes.toByteArray();
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public @NotNull V decode(byte @NotNull [] data) {
+                    try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                        return (V) in.readObject();
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch(ClassNotFoundException e) {
+                        throw new UncheckedException(e);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Selects the entries to evict from a bounded cache. The cache informs the policy about
+     * all insertions, accesses and removals of entries, and asks it for a victim to evict
+     * whenever the maximum weight is exceeded. A policy instance belongs to a single cache,
+     * which calls it from one thread at a time.
+     *
+     * @param <K> The key type
+     */
+    public interface EvictionPolicy<K> {
+
+        /**
+         * Called once by the cache before any other method gets called.
+         *
+         * @param maxWeight The maximum total weight of the cache
+         */
+        void initialize(long maxWeight);
+
+        /**
+         * Called after a new entry was inserted.
+         *
+         * @param key The key of the entry
+         * @param weight The weight of the entry
+         */
+        void onInsert(K key, long weight);
+
+        /**
+         * Called when an existing entry was read from the cache.
+         *
+         * @param key The key of the entry
+         */
+        void onAccess(K key);
+
+        /**
+         * Called after the value of an existing entry was replaced.
+         *
+         * @param key The key of the entry
+         * @param oldWeight The weight of the entry before the update
+         * @param newWeight The weight of the entry after the update
+         */
+        default void onUpdate(K key, long oldWeight, long newWeight) {
+            onRemove(key, oldWeight);
+            onInsert(key, newWeight);
+        }
+
+        /**
+         * Called after an entry was removed, including entries evicted because they were
+         * selected by {@link #selectVictim()}.
+         *
+         * @param key The key of the entry
+         * @param weight The weight of the entry
+         */
+        void onRemove(K key, long weight);
+
+        /**
+         * Selects the entry to evict next. The entry is not removed by this method, the
+         * cache will remove it and call {@link #onRemove(Object, long)} afterwards.
+         *
+         * @return The key of the entry to evict, or <code>null</code> if there is no entry
+         */
+        K selectVictim();
+
+
+        /**
+         * Returns a new policy that evicts the least recently used entry.
+         *
+         * @param <K> The key type
+         * @return A new LRU eviction policy
+         */
+        static <K> EvictionPolicy<K> lru() {
+            return new LruEvictionPolicy<>();
+        }
+
+        /**
+         * Returns a new W-TinyLFU policy. New entries are admitted into a small LRU window.
+         * Entries leaving the window only replace an entry of the main space if they were
+         * used more frequently, according to a compact frequency sketch with periodic aging.
+         * Thus, a scan over many keys which are used only once cannot flush frequently used
+         * entries from the cache.
+         *
+         * @param <K> The key type
+         * @return A new W-TinyLFU eviction policy
+         */
+        static <K> EvictionPolicy<K> windowTinyLfu() {
+            return new TinyLfuEvictionPolicy<>();
+        }
     }
 }
@@ -0,0 +1,314 @@
+package de.rccookie.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+/**
+ * An immutable snapshot of the statistics of a {@link Cache} or {@link CachedSupplier}.
+ * Statistics are only recorded if enabled using {@link Cache.Builder#recordStats()} or
+ * {@link CachedSupplier#recordStats(String)}.
+ *
+ * <p>The latencies of loads are counted in a histogram with exponentially growing buckets.
+ * Bucket 0 contains all loads faster than {@link #bucketUpperBound(int) bucketUpperBound(0)}
+ * nanoseconds, about one microsecond, and each following bucket covers twice the range of
+ * the previous one. The last bucket has no upper bound.</p>
+ */
+public final class CacheStats {
+
+    /**
+     * The number of buckets in the load latency histogram.
+     */
+    public static final int BUCKET_COUNT = 32;
+    /**
+     * Log2 of the upper bound of bucket 0 in nanoseconds.
+     */
+    private static final int FIRST_BUCKET_BITS = 10;
+
+    /**
+     * Statistics with all counters being zero.
+     */
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, new long[BUCKET_COUNT]);
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTime;
+    private final long evictionCount;
+    private final long[] loadLatencies;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime, long evictionCount, long[] loadLatencies) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+        this.loadLatencies = loadLatencies;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+               "hits=" + hitCount +
+               ", misses=" + missCount +
+               ", loads=" + loadSuccessCount +
+               ", loadFailures=" + loadFailureCount +
+               ", totalLoadTime=" + totalLoadTime + "ns" +
+               ", evictions=" + evictionCount +
+               '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof CacheStats)) return false;
+        CacheStats s = (CacheStats) o;
+        return hitCount == s.hitCount &&
+               missCount == s.missCount &&
+               loadSuccessCount == s.loadSuccessCount &&
+               loadFailureCount == s.loadFailureCount &&
+               totalLoadTime == s.totalLoadTime &&
+               evictionCount == s.evictionCount &&
+               Arrays.equals(loadLatencies, s.loadLatencies);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(hitCount);
+        hash = 31 * hash + Long.hashCode(missCount);
+        hash = 31 * hash + Long.hashCode(loadSuccessCount);
+        hash = 31 * hash + Long.hashCode(loadFailureCount);
+        hash = 31 * hash + Long.hashCode(totalLoadTime);
+        hash = 31 * hash + Long.hashCode(evictionCount);
+        return 31 * hash + Arrays.hashCode(loadLatencies);
+    }
+
+    /**
+     * Returns the number of requests which returned a value already present in the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of requests for which the value was not present in the cache.
+     *
+     * @return The number of cache misses
+     */
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the total number of requests, which is the sum of hits and misses.
+     *
+     * @return The number of requests
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of requests which were hits, or 1 if there were no requests.
+     *
+     * @return The hit rate
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1 : (double) hitCount / requests;
+    }
+
+    /**
+     * Returns the ratio of requests which were misses, or 0 if there were no requests.
+     *
+     * @return The miss rate
+     */
+    public double missRate() {
+        long requests = requestCount();
+        return requests == 0 ? 0 : (double) missCount / requests;
+    }
+
+    /**
+     * Returns the number of loads which produced a value, including background refreshes.
+     *
+     * @return The number of successful loads
+     */
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Returns the number of loads which threw an exception or returned <code>null</code>.
+     *
+     * @return The number of failed loads
+     */
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Returns the total number of loads.
+     *
+     * @return The number of loads
+     */
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * Returns the total time spent loading values, in nanoseconds.
+     *
+     * @return The total load time
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Returns the average time to load a value, in nanoseconds, or 0 if there were no loads.
+     *
+     * @return The average load time
+     */
+    public double averageLoadPenalty() {
+        long loads = loadCount();
+        return loads == 0 ? 0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * Returns the number of entries that were evicted or expired, not including explicit
+     * removals and replaced values.
+     *
+     * @return The number of evictions
+     */
+    public long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of loads per latency bucket.
+     *
+     * @return A new array of length {@link #BUCKET_COUNT}
+     * @see #bucketUpperBound(int)
+     */
+    public long @NotNull [] loadLatencyHistogram() {
+        return loadLatencies.clone();
+    }
+
+    /**
+     * Returns an estimate of the given percentile of the load latencies, namely the upper
+     * bound of the bucket containing it.
+     *
+     * @param percentile The percentile, between 0 and 1
+     * @return The estimated latency in nanoseconds, 0 if there were no loads
+     */
+    public long loadLatencyPercentile(double percentile) {
+        Arguments.checkInclusive(percentile, 0.0, 1.0);
+        long loads = 0;
+        for(long count : loadLatencies) loads += count;
+        if(loads == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile * loads));
+        long seen = 0;
+        for(int i = 0; i < loadLatencies.length; i++) {
+            seen += loadLatencies[i];
+            if(seen >= target)
+                return bucketUpperBound(i);
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the sum of these and the given statistics.
+     *
+     * @param other The statistics to add
+     * @return The combined statistics
+     */
+    @NotNull
+    public CacheStats plus(@NotNull CacheStats other) {
+        long[] histogram = new long[BUCKET_COUNT];
+        for(int i = 0; i < BUCKET_COUNT; i++)
+            histogram[i] = loadLatencies[i] + other.loadLatencies[i];
+        return new CacheStats(
+                hitCount + other.hitCount,
+                missCount + other.missCount,
+                loadSuccessCount + other.loadSuccessCount,
+                loadFailureCount + other.loadFailureCount,
+                totalLoadTime + other.totalLoadTime,
+                evictionCount + other.evictionCount,
+                histogram
+        );
+    }
+
+    /**
+     * Returns the difference between these and the given earlier statistics of the same
+     * cache, e.g. to export the activity of a time interval.
+     *
+     * @param earlier The statistics to subtract
+     * @return The statistics for the time between the snapshots
+     */
+    @NotNull
+    public CacheStats minus(@NotNull CacheStats earlier) {
+        long[] histogram = new long[BUCKET_COUNT];
+        for(int i = 0; i < BUCKET_COUNT; i++)
+            histogram[i] = Math.max(0, loadLatencies[i] - earlier.loadLatencies[i]);
+        return new CacheStats(
+                Math.max(0, hitCount - earlier.hitCount),
+                Math.max(0, missCount - earlier.missCount),
+                Math.max(0, loadSuccessCount - earlier.loadSuccessCount),
+                Math.max(0, loadFailureCount - earlier.loadFailureCount),
+                Math.max(0, totalLoadTime - earlier.totalLoadTime),
+                Math.max(0, evictionCount - earlier.evictionCount),
+                histogram
+        );
+    }
+
+
+    /**
+     * Returns the exclusive upper bound of the given latency bucket.
+     *
+     * @param bucket The index of the bucket
+     * @return The upper bound in nanoseconds, {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long bucketUpperBound(@Range(from = 0, to = BUCKET_COUNT - 1) int bucket) {
+        Arguments.checkRange(bucket, 0, BUCKET_COUNT);
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (bucket + FIRST_BUCKET_BITS);
+    }
+
+    /**
+     * Returns the index of the bucket for the given latency.
+     */
+    static int bucketOf(long nanos) {
+        int bits = 64 - Long.numberOfLeadingZeros(nanos);
+        return Math.max(0, Math.min(BUCKET_COUNT - 1, bits - FIRST_BUCKET_BITS));
+    }
+
+    /**
+     * Returns the current statistics of all caches created with a name, summed up per name.
+     * Caches that have been garbage collected are not included.
+     *
+     * @return The statistics per cache name
+     */
+    @NotNull
+    public static Map<String, CacheStats> all() {
+        return Collections.unmodifiableMap(StatsRecorder.snapshotAll());
+    }
+
+    /**
+     * Returns the sum of the current statistics of all caches created with a name.
+     *
+     * @return The aggregated statistics
+     */
+    @NotNull
+    public static CacheStats aggregate() {
+        CacheStats sum = EMPTY;
+        for(CacheStats stats : StatsRecorder.snapshotAll().values())
+            sum = sum.plus(stats);
+        return sum;
+    }
+}
@@ -1,59 +1,237 @@
 package de.rccookie.util;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
 public interface CachedSupplier<T> extends Supplier<T> {
 
     void invalidate();
 
     boolean isCached();
 
+    /**
+     * Returns a thread-safe version of this supplier. Implementations which are already
+     * thread-safe return themselves, otherwise all calls are synchronized.
+     *
+     * @return A thread-safe cached supplier with the same value
+     */
     default CachedSupplier<T> threadSafe() {
         return new Synchronized<>(this);
     }
 
+    /**
+     * Returns a snapshot of the statistics of this supplier.
+     *
+     * @return The current statistics, or {@link CacheStats#EMPTY} if statistics are not
+     *         recorded for this supplier
+     * @see #recordStats(String)
+     */
+    @NotNull
+    default CacheStats stats() {
+        return CacheStats.EMPTY;
+    }
+
+    /**
+     * Returns a view of this supplier which records statistics, available using
+     * {@link #stats()}. Calls of {@link #get()} count as hits if the value was cached,
+     * otherwise as misses and loads.
+     *
+     * @param name The name to include the statistics in {@link CacheStats#all()} under, or
+     *             <code>null</code>
+     * @return A supplier recording statistics
+     */
+    default CachedSupplier<T> recordStats(@Nullable String name) {
+        return new Recording<>(this, new StatsRecorder(name));
+    }
+
 
 
     static <T> CachedSupplier<T> timed(Supplier<? extends T> generator, long lifetime) {
         return new Timed<>(generator, lifetime);
     }
 
+    /**
+     * Returns a thread-safe cached supplier which regenerates its value in the background
+     * once it is older than <code>refreshAfter</code> milliseconds, while still returning the
+     * old value. Only once the value is older than <code>lifetime</code> milliseconds, callers
+     * wait for a new value to be generated.
+     *
+     * @param generator The generator for the value
+     * @param refreshAfter The age in milliseconds after which the value gets refreshed
+     * @param lifetime The age in milliseconds after which the value must not be returned anymore
+     * @return A new refreshing cached supplier
+     */
+    static <T> CachedSupplier<T> refreshing(Supplier<? extends T> generator, long refreshAfter, long lifetime) {
+        return new Refreshing<>(generator, refreshAfter, lifetime);
+    }
+
 
 
+    /**
+     * A cached supplier whose value expires after a fixed lifetime. It is thread-safe, and
+     * reading a valid value takes a single volatile read without locking.
+     */
     class Timed<T> implements CachedSupplier<T> {
 
-        private final Supplier<? extends T> generator;
-        private final long lifetime;
+        final Supplier<? extends T> generator;
+        private final long lifetimeNanos;
 
-        private long timeout = 0;
-        private T value = null;
+        /**
+         * The value and the time it was generated, replaced as a whole such that readers
+         * always see a consistent pair.
+         */
+        volatile State<T> state = null;
 
         protected Timed(Supplier<? extends T> generator, long lifetime) {
-            this.lifetime = lifetime;
+            this.lifetimeNanos = TimeUnit.MILLISECONDS.toNanos(lifetime);
             this.generator = Arguments.checkNull(generator, "generator");
         }
 
         @Override
         public T get() {
-            if(!isCached()) {
-                value = generator.get();
-                long now = System.currentTimeMillis();
-                timeout = now + lifetime;
-                if(timeout < now)
-                    timeout = Long.MAX_VALUE;
+            State<T> state = this.state;
+            if(state != null && isValid(state))
+                return state.value;
+            return load();
+        }
+
+        /**
+         * Generates a new value unless another thread did so while waiting for the lock.
+         */
+        synchronized T load() {
+            State<T> state = this.state;
+            if(state == null || !isValid(state))
+                this.state = state = new State<>(generator.get(), System.nanoTime());
+            return state.value;
+        }
+
+        boolean isValid(State<T> state) {
+            // Monotonic, unlike the wall clock
+            return lifetimeNanos == Long.MAX_VALUE || System.nanoTime() - state.written < lifetimeNanos;
+        }
+
+        @Override
+        public boolean isCached() {
+            State<T> state = this.state;
+            return state != null && isValid(state);
+        }
+
+        @Override
+        public void invalidate() {
+            state = null;
+        }
+
+        @Override
+        public CachedSupplier<T> threadSafe() {
+            return this;
+        }
+
+        static final class State<T> {
+            final T value;
+            final long written;
+
+            State(T value, long written) {
+                this.value = value;
+                this.written = written;
+            }
+        }
+    }
+
+    /**
+     * A timed cached supplier which regenerates its value in the background before it expires.
+     */
+    class Refreshing<T> extends Timed<T> {
+
+        private final long refreshAfterNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        protected Refreshing(Supplier<? extends T> generator, long refreshAfter, long lifetime) {
+            super(generator, Arguments.checkRange(lifetime, Arguments.checkRange(refreshAfter, 0L, null), null));
+            this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfter);
+        }
+
+        @Override
+        public T get() {
+            State<T> state = this.state;
+            if(state == null || !isValid(state))
+                return load();
+            if(System.nanoTime() - state.written >= refreshAfterNanos && refreshing.compareAndSet(false, true))
+                refresh(state);
+            return state.value;
+        }
+
+        private void refresh(State<T> old) {
+            try {
+                ThreadedFutureImpl.DEFAULT_EXECUTOR.execute(() -> {
+                    try {
+                        T value = generator.get();
+                        synchronized(this) {
+                            // Don't override an invalidation or a value loaded in the meantime
+                            if(state == old)
+                                state = new State<>(value, System.nanoTime());
+                        }
+                    } catch(RuntimeException e) {
+                        Console.warn("Failed to refresh cached value:");
+                        Console.warn(e);
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    class Recording<T> implements CachedSupplier<T> {
+
+        private final CachedSupplier<? extends T> cache;
+        private final StatsRecorder stats;
+
+        Recording(CachedSupplier<? extends T> cache, StatsRecorder stats) {
+            this.cache = Arguments.checkNull(cache, "supplier");
+            this.stats = stats;
+        }
+
+        @Override
+        public T get() {
+            if(cache.isCached()) {
+                stats.recordHit();
+                return cache.get();
+            }
+            stats.recordMiss();
+            long start = System.nanoTime();
+            T value = null;
+            try {
+                return value = cache.get();
+            } finally {
+                stats.recordLoad(System.nanoTime() - start, value != null);
             }
-            return value;
         }
 
         @Override
         public boolean isCached() {
-            return System.currentTimeMillis() < timeout;
+            return cache.isCached();
         }
 
         @Override
         public void invalidate() {
-            timeout = 0;
-            value = null;
+            cache.invalidate();
+        }
+
+        @Override
+        public CachedSupplier<T> threadSafe() {
+            return new Recording<>(cache.threadSafe(), stats);
+        }
+
+        @Override
+        public @NotNull CacheStats stats() {
+            return stats.snapshot();
         }
     }
 
@@ -80,6 +258,11 @@ public interface CachedSupplier<T> extends Supplier<T> {
             cache.invalidate();
         }
 
+        @Override
+        public @NotNull CacheStats stats() {
+            return cache.stats();
+        }
+
         @Override
         public CachedSupplier<T> threadSafe() {
             return this;
@@ -0,0 +1,98 @@
+package de.rccookie.util;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+/**
+ * A thread pool with a bounded number of daemon worker threads. Threads are created on demand
+ * up to the maximum thread count, and terminate again after being idle for the keep-alive time,
+ * such that the pool does not hold any threads while it is unused. Tasks submitted while all
+ * threads are busy are queued.
+ *
+ * <p>Because the worker threads are daemon threads, the pool never prevents the JVM from exiting.
+ * Tasks submitted after the pool was shut down are each run on a new thread instead of being
+ * rejected. Using {@link #shutdownOnExit()}, the pool stops accepting new tasks when the JVM shuts
+ * down, such that tasks submitted from shutdown hooks do not run on daemon threads.</p>
+ */
+public class DaemonThreadPool extends ThreadPoolExecutor {
+
+    private final String name;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * Creates a new daemon thread pool.
+     *
+     * @param name The name of the pool, used as prefix for the thread names
+     * @param maxThreads The maximum number of threads to run at once
+     * @param keepAlive The time after which an idle thread terminates
+     * @param unit The unit of the keep-alive time
+     */
+    public DaemonThreadPool(String name, @Range(from = 1) int maxThreads, long keepAlive, @NotNull TimeUnit unit) {
+        super(
+                Arguments.checkRange(maxThreads, 1, null), maxThreads,
+                keepAlive, unit,
+                new LinkedBlockingQueue<>(),
+                (r, pool) -> new Thread(r, name + " (shutdown)").start()
+        );
+        this.name = Arguments.checkNull(name, "name");
+        setThreadFactory(r -> {
+            Thread thread = new Thread(r, this.name + " " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String toString() {
+        return name + " [" + getActiveCount() + "/" + getPoolSize() + " threads active, max " + getMaximumPoolSize() + ", " + getQueue().size() + " queued]";
+    }
+
+    /**
+     * Shuts down this pool when the JVM shuts down. If the JVM is already shutting down, the
+     * pool is shut down immediately.
+     *
+     * @return This pool
+     */
+    public DaemonThreadPool shutdownOnExit() {
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, name + " shutdown"));
+        } catch(IllegalStateException e) {
+            shutdown();
+        }
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of threads this pool runs at once.
+     *
+     * @return The maximum thread count
+     */
+    public int getMaxThreads() {
+        return getMaximumPoolSize();
+    }
+
+    /**
+     * Sets the maximum number of threads this pool runs at once. Reducing the thread count
+     * does not interrupt any running tasks, excess threads terminate once they become idle.
+     *
+     * @param maxThreads The maximum number of threads to use
+     */
+    public synchronized void setMaxThreads(@Range(from = 1) int maxThreads) {
+        Arguments.checkRange(maxThreads, 1, null);
+        // The core size must never exceed the maximum size
+        if(maxThreads > getMaximumPoolSize()) {
+            setMaximumPoolSize(maxThreads);
+            setCorePoolSize(maxThreads);
+        }
+        else {
+            setCorePoolSize(maxThreads);
+            setMaximumPoolSize(maxThreads);
+        }
+    }
+}
@@ -15,11 +15,11 @@ public abstract class DualComputationFutureImpl<V> extends AbstractFutureImpl<V>
 
     @Override
     public V waitFor() throws IllegalStateException, UnsupportedOperationException {
-        if(done) return get();
+        if(isDone()) return get();
         cancelNonBlocking();
         try {
             complete(computeBlocking());
-            return value;
+            return get();
         } catch(Exception e) {
             fail(e);
             throw new IllegalStateException("Computation has been cancelled", e);
@@ -0,0 +1,114 @@
+package de.rccookie.util;
+
+/**
+ * A count-min sketch estimating how often keys have been used, using 4-bit counters.
+ * Once the number of recorded uses reaches a multiple of the sketch's width, all counters
+ * are halved, such that the estimates reflect recent rather than all-time popularity.
+ * The sketch grows with the number of entries it is supposed to keep track of.
+ */
+final class FrequencySketch {
+
+    private static final int MAX_WIDTH = 1 << 24;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    /**
+     * Four rows of 4-bit counters, 16 counters per long.
+     */
+    private long[][] table;
+    private int mask;
+    private int sampleSize;
+    private int additions = 0;
+
+    FrequencySketch() {
+        resize(16);
+    }
+
+    /**
+     * Grows the sketch so that it can track the given number of entries with a low error
+     * rate. This resets all counters.
+     *
+     * @param entries The expected number of distinct entries
+     */
+    void ensureCapacity(long entries) {
+        int width = (int) Math.min(MAX_WIDTH, Math.max(16, Long.highestOneBit(Math.max(1, entries - 1)) << 1));
+        if(width > mask + 1)
+            resize(width);
+    }
+
+    private void resize(int width) {
+        table = new long[SEEDS.length][Math.max(1, width / 16)];
+        mask = width - 1;
+        sampleSize = 10 * width;
+        additions = 0;
+    }
+
+    /**
+     * Returns the estimated number of uses of the given key.
+     *
+     * @param key The key to estimate the frequency of
+     * @return The estimated frequency, at most 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key);
+        int frequency = MAX_COUNT;
+        for(int i = 0; i < SEEDS.length; i++)
+            frequency = Math.min(frequency, get(i, index(hash, i)));
+        return frequency;
+    }
+
+    /**
+     * Records a use of the given key.
+     *
+     * @param key The key that was used
+     */
+    void increment(Object key) {
+        int hash = spread(key);
+        boolean added = false;
+        for(int i = 0; i < SEEDS.length; i++)
+            added |= increment(i, index(hash, i));
+        if(added && ++additions >= sampleSize)
+            age();
+    }
+
+    private int get(int row, int index) {
+        return (int) (table[row][index >>> 4] >>> ((index & 15) << 2)) & 15;
+    }
+
+    private boolean increment(int row, int index) {
+        int shift = (index & 15) << 2;
+        long word = table[row][index >>> 4];
+        if(((word >>> shift) & 15) == MAX_COUNT)
+            return false;
+        table[row][index >>> 4] = word + (1L << shift);
+        return true;
+    }
+
+    /**
+     * Halves all counters.
+     */
+    private void age() {
+        for(long[] row : table)
+            for(int i = 0; i < row.length; i++)
+                row[i] = (row[i] >>> 1) & 0x7777777777777777L;
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & mask;
+    }
+
+    private static int spread(Object key) {
+        int h = key != null ? key.hashCode() : 0;
+        h ^= h >>> 17;
+        h *= 0xed5ad4bb;
+        h ^= h >>> 11;
+        h *= 0xac4c1b51;
+        h ^= h >>> 15;
+        return h;
+    }
+}
@@ -1,8 +1,24 @@
 package de.rccookie.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Blocking;
 import org.jetbrains.annotations.Nullable;
@@ -72,6 +88,45 @@ public interface Future<V> {
     @Blocking
     V waitFor() throws IllegalStateException, UnsupportedOperationException;
 
+    /**
+     * Waits at most the given time until the result is computed and returns it.
+     * If the result is already computed it returns the result immediately. Unlike
+     * {@link #waitFor()}, this method never computes the result on the calling
+     * thread, it only waits for the result to be computed.
+     *
+     * <p>The default implementation polls {@link #isDone()} with increasing pauses
+     * of up to one millisecond, such that it does not register any callbacks which
+     * would remain after a timeout. Implementations should override this method if
+     * they can be waited for more efficiently.</p>
+     *
+     * @param timeout The maximum time to wait
+     * @param unit The unit of the timeout
+     * @return The computed result
+     * @throws TimeoutException If the result was not computed within the given time
+     * @throws IllegalStateException If the computation has been canceled
+     */
+    @Blocking
+    default V waitFor(long timeout, TimeUnit unit) throws TimeoutException, IllegalStateException {
+        Arguments.checkNull(unit, "unit");
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long pause = 1000;
+        boolean interrupted = false;
+        while(!isDone()) {
+            long remaining = deadline - System.nanoTime();
+            if(remaining <= 0) {
+                if(interrupted)
+                    Thread.currentThread().interrupt();
+                throw new TimeoutException("Result was not computed within " + timeout + " " + unit.name().toLowerCase());
+            }
+            LockSupport.parkNanos(Math.min(pause, remaining));
+            interrupted |= Thread.interrupted();
+            pause = Math.min(pause << 1, 1000000);
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+        return get();
+    }
+
     /**
      * Sets the action to be executed when the result is received.
      *
@@ -180,6 +235,158 @@ public interface Future<V> {
         return flatMap($ -> nextGenerator.get());
     }
 
+    /**
+     * Returns the executor on which async continuations of this future run by default,
+     * i.e. those registered using {@link #thenAsync(Consumer)}, {@link #mapAsync(Function)}
+     * and {@link #flatMapAsync(Function)}.
+     *
+     * @return The default executor for async continuations
+     * @see #continueOn(Executor)
+     */
+    default Executor getContinuationExecutor() {
+        return ThreadedFutureImpl.DEFAULT_EXECUTOR;
+    }
+
+    /**
+     * Sets the executor on which async continuations of this future run by default. If
+     * this future does not support changing the executor, a new future is returned which
+     * completes like this future and uses the given executor. Futures returned by async
+     * continuations inherit the executor of the future they were created from.
+     *
+     * @param executor The default executor for async continuations
+     * @return This future, or a future mirroring this future
+     */
+    default Future<V> continueOn(Executor executor) {
+        return FutureContinuations.continueOn(this, Arguments.checkNull(executor, "executor"));
+    }
+
+    /**
+     * Sets the action to be executed when the result is received. Unlike
+     * {@link #then(Consumer)}, the action does not run on the thread that completes
+     * this future, but on the {@linkplain #getContinuationExecutor() continuation executor}.
+     *
+     * @param action The action to perform
+     * @return A new future which completes with the result of this future once the action
+     *         has run, or fails if this future fails, the action throws an exception or the
+     *         executor rejects the action
+     */
+    default Future<V> thenAsync(Consumer<? super V> action) {
+        return thenAsync(action, getContinuationExecutor());
+    }
+
+    /**
+     * Sets the action to be executed when the result is received. Unlike
+     * {@link #then(Consumer)}, the action does not run on the thread that completes
+     * this future, but on the given executor.
+     *
+     * @param action The action to perform
+     * @param executor The executor to run the action on
+     * @return A new future which completes with the result of this future once the action
+     *         has run, or fails if this future fails, the action throws an exception or the
+     *         executor rejects the action
+     */
+    default Future<V> thenAsync(Consumer<? super V> action, Executor executor) {
+        return FutureContinuations.thenAsync(this, action, executor);
+    }
+
+    /**
+     * Returns a new future that returns the output of the given mapping function applied
+     * to the output of this future. Unlike {@link #map(Function)}, the mapping function runs
+     * on the {@linkplain #getContinuationExecutor() continuation executor}. If the mapping
+     * function throws an exception, the returned future fails.
+     *
+     * @param mapper The mapping function to apply
+     * @param <T> The type to be mapped to
+     * @return The new future
+     */
+    default <T> Future<T> mapAsync(Function<? super V, ? extends T> mapper) {
+        return mapAsync(mapper, getContinuationExecutor());
+    }
+
+    /**
+     * Returns a new future that returns the output of the given mapping function applied
+     * to the output of this future. Unlike {@link #map(Function)}, the mapping function runs
+     * on the given executor. If the mapping function throws an exception, the returned future
+     * fails.
+     *
+     * @param mapper The mapping function to apply
+     * @param executor The executor to run the mapping function on
+     * @param <T> The type to be mapped to
+     * @return The new future
+     */
+    default <T> Future<T> mapAsync(Function<? super V, ? extends T> mapper, Executor executor) {
+        return FutureContinuations.mapAsync(this, mapper, executor);
+    }
+
+    /**
+     * Returns a new future that represents the computation of this future, then the
+     * application of the given mapping function, and finally the computation of the
+     * future returned by the mapping function. Unlike {@link #flatMap(Function)}, the
+     * mapping function runs on the {@linkplain #getContinuationExecutor() continuation executor}.
+     *
+     * @param mapper The mapping function to generate the second computation part
+     * @param <T> The content type of the future returned by the mapping function
+     * @return The new future
+     */
+    default <T> Future<T> flatMapAsync(Function<? super V, ? extends Future<T>> mapper) {
+        return flatMapAsync(mapper, getContinuationExecutor());
+    }
+
+    /**
+     * Returns a new future that represents the computation of this future, then the
+     * application of the given mapping function, and finally the computation of the
+     * future returned by the mapping function. Unlike {@link #flatMap(Function)}, the
+     * mapping function runs on the given executor.
+     *
+     * @param mapper The mapping function to generate the second computation part
+     * @param executor The executor to run the mapping function on
+     * @param <T> The content type of the future returned by the mapping function
+     * @return The new future
+     */
+    default <T> Future<T> flatMapAsync(Function<? super V, ? extends Future<T>> mapper, Executor executor) {
+        return FutureContinuations.flatMapAsync(this, mapper, executor);
+    }
+
+    /**
+     * Returns a {@link CompletableFuture} which completes when this future completes. If
+     * this future fails, the completable future completes exceptionally with the same cause,
+     * and if this future gets cancelled, the completable future gets cancelled. Conversely,
+     * cancelling the completable future or completing it exceptionally cancels or fails this
+     * future, if it is not done yet. No thread is used for the conversion.
+     *
+     * @return A completion stage mirroring this future
+     */
+    default CompletableFuture<V> toCompletionStage() {
+        return FutureAdapters.toCompletableFuture(this);
+    }
+
+    /**
+     * Returns a future which completes like this future, but fails with a {@link TimeoutException}
+     * if this future does not complete within the given time. This future itself is not affected
+     * by the timeout. The timeout does not occupy a thread while waiting.
+     *
+     * @param timeout The maximum time to wait for this future
+     * @param unit The unit of the timeout
+     * @return A future with the same result as this future, or failed because of the timeout
+     */
+    default Future<V> orTimeout(long timeout, TimeUnit unit) {
+        return FutureTimer.orTimeout(this, timeout, unit);
+    }
+
+    /**
+     * Returns a future which completes like this future, but completes with the given value if
+     * this future does not complete within the given time. This future itself is not affected by
+     * the timeout. The timeout does not occupy a thread while waiting.
+     *
+     * @param value The value to complete with on timeout
+     * @param timeout The maximum time to wait for this future
+     * @param unit The unit of the timeout
+     * @return A future with the same result as this future, or the given value
+     */
+    default Future<V> completeOnTimeout(V value, long timeout, TimeUnit unit) {
+        return FutureTimer.completeOnTimeout(this, value, timeout, unit);
+    }
+
 
     /**
      * Returns a future with the given result already computed.
@@ -201,4 +408,168 @@ public interface Future<V> {
     static <V> Future<V> failed(@Nullable Exception cause) {
         return new FailedFuture<>(cause);
     }
+
+    /**
+     * Returns a future which completes when the given completion stage completes. If the
+     * stage completes exceptionally, the future fails with the same cause (unwrapped from
+     * any {@link CompletionException}), and if the stage gets cancelled, the future gets
+     * cancelled. Conversely, cancelling or failing the returned future cancels or completes
+     * the stage exceptionally, if it supports {@link CompletionStage#toCompletableFuture()}.
+     * No thread is used for the conversion.
+     *
+     * @param stage The completion stage to convert
+     * @param <V> The content type
+     * @return A future mirroring the completion stage
+     */
+    static <V> Future<V> from(CompletionStage<? extends V> stage) {
+        return FutureAdapters.from(Arguments.checkNull(stage, "stage"));
+    }
+
+    /**
+     * Returns a future which completes with the given value after the given delay. No
+     * thread is occupied while waiting. Cancelling the future before the delay has passed
+     * discards the pending delay.
+     *
+     * @param value The value to complete with
+     * @param delay The delay after which to complete
+     * @param unit The unit of the delay
+     * @param <V> The content type
+     * @return A future completing after the given delay
+     */
+    static <V> Future<V> delayed(V value, long delay, TimeUnit unit) {
+        return FutureTimer.delayed(value, delay, Arguments.checkNull(unit, "unit"));
+    }
+
+    /**
+     * Returns a future that completes once all the given futures have completed, with the
+     * results of all futures in the order of the given collection. If any of the futures fails,
+     * the returned future fails immediately with the same cause. No thread is blocked while
+     * waiting for the futures.
+     *
+     * @param futures The futures to wait for
+     * @param <T> The content type of the futures
+     * @return A future with an unmodifiable list of all results
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Future<List<T>> all(Collection<? extends Future<? extends T>> futures) {
+        List<Future<? extends T>> list = new ArrayList<>(Arguments.checkNull(futures, "futures"));
+        if(list.isEmpty())
+            return of(Collections.emptyList());
+
+        ThreadedFutureImpl<List<T>> result = new ThreadedFutureImpl<>();
+        Object[] values = new Object[list.size()];
+        AtomicInteger remaining = new AtomicInteger(values.length);
+        for(int i=0; i<values.length; i++) {
+            int index = i;
+            list.get(i).then(v -> {
+                values[index] = v;
+                if(remaining.decrementAndGet() == 0)
+                    result.tryComplete(Collections.unmodifiableList(Arrays.asList((T[]) values)));
+            }).except(result::tryFail);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a future that completes once all the given futures have completed, with the
+     * results of all futures in the order they were given. If any of the futures fails, the
+     * returned future fails immediately with the same cause.
+     *
+     * @param futures The futures to wait for
+     * @param <T> The content type of the futures
+     * @return A future with an unmodifiable list of all results
+     * @see #all(Collection)
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    static <T> Future<List<T>> all(Future<? extends T>... futures) {
+        return all(Arrays.asList(Arguments.deepCheckNull(futures, "futures")));
+    }
+
+    /**
+     * Returns a future that completes with the result of whichever of the given futures
+     * completes successfully first. The returned future only fails if all the given futures
+     * fail, with the cause of the future that failed last. No thread is blocked while waiting
+     * for the futures.
+     *
+     * @param futures The futures to wait for, at least one
+     * @param <T> The content type of the futures
+     * @return A future with the first result of any of the futures
+     */
+    static <T> Future<T> any(Collection<? extends Future<? extends T>> futures) {
+        List<Future<? extends T>> list = new ArrayList<>(Arguments.checkNull(futures, "futures"));
+        if(list.isEmpty())
+            throw new IllegalArgumentException("At least one future required");
+
+        ThreadedFutureImpl<T> result = new ThreadedFutureImpl<>();
+        AtomicInteger remaining = new AtomicInteger(list.size());
+        for(Future<? extends T> future : list) {
+            future.then(result::tryComplete).except(e -> {
+                if(remaining.decrementAndGet() == 0)
+                    result.tryFail(e);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Returns a future that completes with the result of whichever of the given futures
+     * completes successfully first. The returned future only fails if all the given futures
+     * fail, with the cause of the future that failed last.
+     *
+     * @param futures The futures to wait for, at least one
+     * @param <T> The content type of the futures
+     * @return A future with the first result of any of the futures
+     * @see #any(Collection)
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    static <T> Future<T> any(Future<? extends T>... futures) {
+        return any(Arrays.asList(Arguments.deepCheckNull(futures, "futures")));
+    }
+
+    /**
+     * Returns a future that completes once both given futures have completed, with the result
+     * of the given function applied to both results. If either of the futures fails, or the
+     * function throws an exception, the returned future fails with that cause. No thread is
+     * blocked while waiting for the futures.
+     *
+     * @param a The first future
+     * @param b The second future
+     * @param combiner The function to combine both results
+     * @param <A> The content type of the first future
+     * @param <B> The content type of the second future
+     * @param <R> The content type of the resulting future
+     * @return A future with the combined result
+     */
+    static <A,B,R> Future<R> zip(Future<? extends A> a, Future<? extends B> b, BiFunction<? super A, ? super B, ? extends R> combiner) {
+        Arguments.checkNull(a, "a");
+        Arguments.checkNull(b, "b");
+        Arguments.checkNull(combiner, "combiner");
+
+        ThreadedFutureImpl<R> result = new ThreadedFutureImpl<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        Runnable onComplete = () -> {
+            if(remaining.decrementAndGet() != 0) return;
+            try {
+                result.tryComplete(combiner.apply(a.get(), b.get()));
+            } catch(Exception e) {
+                result.tryFail(e);
+            }
+        };
+        a.then(onComplete).except(result::tryFail);
+        b.then(onComplete).except(result::tryFail);
+        return result;
+    }
+
+    /**
+     * Returns a collector which collects a stream of futures into a single future, which
+     * completes once all the futures have completed, with the results in encounter order.
+     *
+     * @param <T> The content type of the futures
+     * @return A collector combining futures as described by {@link #all(Collection)}
+     */
+    static <T> Collector<Future<? extends T>, ?, Future<List<T>>> collector() {
+        return Collectors.collectingAndThen(Collectors.toList(), Future::all);
+    }
 }
@@ -0,0 +1,78 @@
+package de.rccookie.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Conversions between {@link Future} and {@link CompletionStage}, which only connect
+ * callbacks and never block a thread.
+ */
+final class FutureAdapters {
+
+    private FutureAdapters() {
+        throw new UnsupportedOperationException();
+    }
+
+    static <V> CompletableFuture<V> toCompletableFuture(Future<V> future) {
+        CompletableFuture<V> stage = new CompletableFuture<>();
+        future.then(stage::complete).except(cause -> {
+            if(cause == null)
+                stage.cancel(false);
+            else stage.completeExceptionally(cause);
+        });
+        // Propagate cancellation and failure of the stage back to the future
+        stage.whenComplete((v, t) -> {
+            if(t == null || future.isDone()) return;
+            Exception cause = unwrap(t);
+            if(cause == null || !(future instanceof FutureImpl))
+                future.cancel();
+            else tryFail((FutureImpl<V>) future, cause);
+        });
+        return stage;
+    }
+
+    static <V> Future<V> from(CompletionStage<? extends V> stage) {
+        ThreadedFutureImpl<V> future = new ThreadedFutureImpl<>();
+        stage.whenComplete((v, t) -> {
+            if(t == null)
+                future.tryComplete(v);
+            else future.tryFail(unwrap(t));
+        });
+        // Propagate cancellation and failure of the future back to the stage, if possible
+        future.except(cause -> {
+            CompletableFuture<? extends V> completable;
+            try {
+                completable = stage.toCompletableFuture();
+            } catch(UnsupportedOperationException e) {
+                return;
+            }
+            if(cause == null)
+                completable.cancel(false);
+            else completable.completeExceptionally(cause);
+        });
+        return future;
+    }
+
+    /**
+     * Returns the exception to fail a future with for the given exceptional completion of a
+     * completion stage, or <code>null</code> if the stage was cancelled.
+     */
+    private static Exception unwrap(Throwable t) {
+        while((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null)
+            t = t.getCause();
+        if(t instanceof CancellationException)
+            return null;
+        return t instanceof Exception ? (Exception) t : new UncheckedException(t);
+    }
+
+    private static void tryFail(FutureImpl<?> future, Exception cause) {
+        try {
+            future.fail(cause);
+        } catch(IllegalStateException e) {
+            // Completed concurrently, nothing to propagate
+        }
+    }
+}
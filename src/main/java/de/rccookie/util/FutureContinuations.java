@@ -0,0 +1,87 @@
+package de.rccookie.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of the continuations of {@link Future} which run on an executor
+ * rather than on the thread that completes the future.
+ */
+final class FutureContinuations {
+
+    private FutureContinuations() {
+        throw new UnsupportedOperationException();
+    }
+
+    static <V> Future<V> continueOn(Future<V> future, Executor executor) {
+        ThreadedFutureImpl<V> result = new ThreadedFutureImpl<>();
+        result.continueOn(executor);
+        future.then(result::tryComplete).except(result::tryFail);
+        return result;
+    }
+
+    static <V> Future<V> thenAsync(Future<V> future, Consumer<? super V> action, Executor executor) {
+        Arguments.checkNull(action, "action");
+        Arguments.checkNull(executor, "executor");
+        ThreadedFutureImpl<V> result = derived(future);
+        future.then(v -> run(executor, result, () -> {
+            action.accept(v);
+            result.tryComplete(v);
+        }));
+        future.except(result::tryFail);
+        return result;
+    }
+
+    static <V,T> Future<T> mapAsync(Future<V> future, Function<? super V, ? extends T> mapper, Executor executor) {
+        Arguments.checkNull(mapper, "mapper");
+        Arguments.checkNull(executor, "executor");
+        ThreadedFutureImpl<T> result = derived(future);
+        future.then(v -> run(executor, result, () -> result.tryComplete(mapper.apply(v))));
+        future.except(result::tryFail);
+        return result;
+    }
+
+    static <V,T> Future<T> flatMapAsync(Future<V> future, Function<? super V, ? extends Future<T>> mapper, Executor executor) {
+        Arguments.checkNull(mapper, "mapper");
+        Arguments.checkNull(executor, "executor");
+        ThreadedFutureImpl<T> result = derived(future);
+        future.then(v -> run(executor, result, () -> {
+            Future<T> next = mapper.apply(v);
+            next.then(result::tryComplete).except(result::tryFail);
+        }));
+        future.except(result::tryFail);
+        return result;
+    }
+
+    /**
+     * Returns a new, incomplete future which runs its own async continuations on the same
+     * executor as the given future.
+     */
+    private static <T> ThreadedFutureImpl<T> derived(Future<?> future) {
+        ThreadedFutureImpl<T> result = new ThreadedFutureImpl<>();
+        result.continueOn(future.getContinuationExecutor());
+        return result;
+    }
+
+    /**
+     * Runs the given code on the given executor, unless the result is already done by then
+     * (i.e. got cancelled). If the code throws an exception, or the executor rejects the task,
+     * the result fails.
+     */
+    private static void run(Executor executor, ThreadedFutureImpl<?> result, Runnable code) {
+        try {
+            executor.execute(() -> {
+                if(result.isDone()) return;
+                try {
+                    code.run();
+                } catch(Exception e) {
+                    result.tryFail(e);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            result.tryFail(e);
+        }
+    }
+}
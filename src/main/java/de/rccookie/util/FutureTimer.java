@@ -0,0 +1,92 @@
+package de.rccookie.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The library-wide timer for timeouts and delays of futures. All deadlines are kept in a
+ * single priority queue which is served by one daemon thread, so a pending deadline only
+ * costs a small queue entry. Deadlines which are no longer needed are removed from the
+ * queue immediately. The timer thread only dispatches the expired actions to a separate,
+ * unbounded set of daemon threads, such that slow callbacks of a future cannot delay other
+ * deadlines. The actions deliberately don't run on {@link ThreadedFutureImpl#DEFAULT_EXECUTOR},
+ * as a timeout has to fire even if all of its threads are blocked.
+ */
+final class FutureTimer {
+
+    private FutureTimer() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final ScheduledThreadPoolExecutor TIMER;
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "Future timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+        // Don't keep the thread alive while no deadlines are pending
+        TIMER.setKeepAliveTime(10, TimeUnit.SECONDS);
+        TIMER.allowCoreThreadTimeOut(true);
+    }
+
+    private static final AtomicInteger DISPATCHER_COUNT = new AtomicInteger();
+    /**
+     * Runs the expired actions. Threads are only created if no idle thread is available.
+     */
+    private static final ThreadPoolExecutor DISPATCHER = new ThreadPoolExecutor(
+            0, Integer.MAX_VALUE,
+            10, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "Future timer dispatcher " + DISPATCHER_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
+    /**
+     * Runs the given action on a dispatcher thread after the given delay.
+     *
+     * @param action The action to run
+     * @param delay The delay after which to run the action
+     * @param unit The unit of the delay
+     * @return A handle to cancel the action
+     */
+    static ScheduledFuture<?> schedule(Runnable action, long delay, TimeUnit unit) {
+        return TIMER.schedule(() -> DISPATCHER.execute(action), delay, unit);
+    }
+
+    static <V> Future<V> delayed(V value, long delay, TimeUnit unit) {
+        ThreadedFutureImpl<V> result = new ThreadedFutureImpl<>();
+        ScheduledFuture<?> timeout = schedule(() -> result.tryComplete(value), delay, unit);
+        result.whenDone(() -> timeout.cancel(false));
+        return result;
+    }
+
+    static <V> Future<V> orTimeout(Future<V> future, long timeout, TimeUnit unit) {
+        return withTimeout(future, timeout, unit, result -> result.tryFail(new TimeoutException("Future did not complete within " + timeout + " " + unit.name().toLowerCase())));
+    }
+
+    static <V> Future<V> completeOnTimeout(Future<V> future, V value, long timeout, TimeUnit unit) {
+        return withTimeout(future, timeout, unit, result -> result.tryComplete(value));
+    }
+
+    private static <V> Future<V> withTimeout(Future<V> future, long timeout, TimeUnit unit, Consumer<ThreadedFutureImpl<V>> onTimeout) {
+        Arguments.checkNull(unit, "unit");
+        ThreadedFutureImpl<V> result = new ThreadedFutureImpl<>();
+        future.then(result::tryComplete).except(result::tryFail);
+        if(result.isDone())
+            return result;
+        ScheduledFuture<?> handle = schedule(() -> onTimeout.accept(result), timeout, unit);
+        result.whenDone(() -> handle.cancel(false));
+        return result;
+    }
+}
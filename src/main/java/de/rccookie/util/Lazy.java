@@ -1,11 +1,15 @@
 package de.rccookie.util;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -14,10 +18,29 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * Collection of classes for lazy-loading values and collections.
+ *
+ * <p>The lazy collections load elements from their source iterator on the calling thread
+ * when needed, and are not thread-safe. The variants taking an {@link Executor} instead
+ * prefetch the whole source in the background, in chunks, while already loaded elements
+ * can be read. They are safe to be read by multiple threads at once, and reading an element
+ * which has not been loaded yet waits for the prefetching to reach it.</p>
  */
 public final class Lazy<T> {
 
-    private Supplier<? extends T> supplier;
+    /**
+     * Number of elements loaded by a prefetching task before it resubmits itself to the executor.
+     */
+    private static final int PREFETCH_CHUNK_SIZE = 64;
+    /**
+     * Placeholder for <code>null</code> in concurrent hash maps.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * The supplier for the value, <code>null</code> once the value has been computed. Being
+     * volatile, it publishes the value written before it is cleared.
+     */
+    private volatile Supplier<? extends T> supplier;
     private T value;
 
     private Lazy(Supplier<? extends T> supplier) {
@@ -29,14 +52,20 @@ public final class Lazy<T> {
     }
 
     /**
-     * Returns the value of this lazy. If not yet done it will first be computed
+     * Returns the value of this lazy. If not yet done it will first be computed. Once
+     * the value has been computed, this method does not lock.
      *
      * @return The value of this lazy
      */
-    public synchronized T value() {
-        if(supplier != null) {
-            value = supplier.get();
-            supplier = null;
+    public T value() {
+        if(supplier == null)
+            return value;
+        synchronized(this) {
+            Supplier<? extends T> supplier = this.supplier;
+            if(supplier != null) {
+                value = supplier.get();
+                this.supplier = null;
+            }
         }
         return value;
     }
@@ -85,6 +114,21 @@ public final class Lazy<T> {
         return new List<>(src);
     }
 
+    /**
+     * Returns a read-only list with the contents returned by the given iterator, which gets
+     * consumed in the background using the given executor. The list is safe to be read
+     * concurrently. If the iterator throws an exception, reading elements which could not
+     * be loaded rethrows it.
+     *
+     * @param src The iterator returning the items for the list, which must not be used elsewhere
+     * @param prefetchExecutor The executor to consume the iterator on
+     * @return A list containing all elements returned by the iterator
+     * @param <E> The content type of the list
+     */
+    public static <E> java.util.List<E> list(Iterator<? extends E> src, Executor prefetchExecutor) {
+        return new PrefetchedList<>(src, prefetchExecutor);
+    }
+
     /**
      * Returns a lazily populated set with the contents returned by the given iterator.
      * The returned set is read-only. If the iterator returned duplicate object, there is
@@ -98,6 +142,22 @@ public final class Lazy<T> {
         return new Set<>(src);
     }
 
+    /**
+     * Returns a read-only set with the contents returned by the given iterator, which gets
+     * consumed in the background using the given executor. The set is safe to be read
+     * concurrently, and iterates over the elements in the order they were first returned
+     * by the iterator. If the iterator returns duplicate objects, the first one is kept.
+     *
+     * @param src The iterator returning the items for the set, which must not be used elsewhere
+     * @param prefetchExecutor The executor to consume the iterator on
+     * @return A set containing all distinct elements returned by the iterator
+     * @param <E> The content type of the set
+     * @see #list(Iterator, Executor)
+     */
+    public static <E> java.util.Set<E> set(Iterator<? extends E> src, Executor prefetchExecutor) {
+        return new PrefetchedSet<>(src, prefetchExecutor);
+    }
+
     /**
      * Returns a lazily populated collection with the contents returned by the given iterator.
      * The returned collection is read-only.
@@ -110,6 +170,21 @@ public final class Lazy<T> {
         return new Collection<>(src);
     }
 
+    /**
+     * Returns a read-only collection with the contents returned by the given iterator, which
+     * gets consumed in the background using the given executor. The collection is safe to be
+     * read concurrently.
+     *
+     * @param src The iterator returning the items for the collection, which must not be used elsewhere
+     * @param prefetchExecutor The executor to consume the iterator on
+     * @return A collection containing all elements returned by the iterator
+     * @param <E> The content type of the collection
+     * @see #list(Iterator, Executor)
+     */
+    public static <E> java.util.Collection<E> collection(Iterator<? extends E> src, Executor prefetchExecutor) {
+        return new PrefetchedList<>(src, prefetchExecutor);
+    }
+
     /**
      * Returns a lazily populated map with the contents returned by the given iterator.
      * The returned map is read-only. If the iterator returns the same key multiple times, there
@@ -124,6 +199,24 @@ public final class Lazy<T> {
         return new Map<>(src);
     }
 
+    /**
+     * Returns a read-only map with the contents returned by the given iterator, which gets
+     * consumed in the background using the given executor. The map is safe to be read
+     * concurrently, and lookups of loaded keys take constant time. It iterates over the
+     * entries in the order they were returned by the iterator. If the iterator returns the
+     * same key multiple times, the first entry is kept.
+     *
+     * @param src The iterator returning the items for the map, which must not be used elsewhere
+     * @param prefetchExecutor The executor to consume the iterator on
+     * @return A map containing all distinct entries returned by the iterator
+     * @param <K> The key type of the map
+     * @param <V> The value type of the map
+     * @see #list(Iterator, Executor)
+     */
+    public static <K,V> java.util.Map<K,V> map(Iterator<? extends java.util.Map.Entry<? extends K, ? extends V>> src, Executor prefetchExecutor) {
+        return new PrefetchedMap<>(src, prefetchExecutor);
+    }
+
     /**
      * Returns a lazily populated map with the contents returned by the given iterator, where the
      * order in which the objects will be reported on iteration is consistent with the order in
@@ -140,6 +233,22 @@ public final class Lazy<T> {
         return new Map<>(src);
     }
 
+    /**
+     * Returns a read-only map with the contents returned by the given iterator, which gets
+     * consumed in the background using the given executor. Maps with prefetching always
+     * iterate in the order the entries were returned by the iterator.
+     *
+     * @param src The iterator returning the items for the map, which must not be used elsewhere
+     * @param prefetchExecutor The executor to consume the iterator on
+     * @return A map containing all distinct entries returned by the iterator
+     * @param <K> The key type of the map
+     * @param <V> The value type of the map
+     * @see #map(Iterator, Executor)
+     */
+    public static <K,V> java.util.Map<K,V> orderedMap(Iterator<? extends java.util.Map.Entry<? extends K, ? extends V>> src, Executor prefetchExecutor) {
+        return new PrefetchedMap<>(src, prefetchExecutor);
+    }
+
 
 
     private static final class List<E> extends AbstractImmutableList<E> {
@@ -739,6 +848,576 @@ public final class Lazy<T> {
     }
 
 
+    /**
+     * Consumes a source iterator on an executor in chunks, and publishes the elements in an
+     * append-only array which can be read concurrently while further elements are loaded.
+     */
+    private static final class Prefetcher<T> implements Runnable {
+
+        /**
+         * Set to the prefetcher which the current thread is resubmitting to its executor. If
+         * the executor runs the task inline, the task replaces it with {@link #RAN_INLINE} and
+         * returns, such that the submitting call continues in its loop instead of recursing
+         * once per chunk.
+         */
+        private static final ThreadLocal<Object> RESUBMITTING = new ThreadLocal<>();
+        private static final Object RAN_INLINE = new Object();
+
+        private final Iterator<? extends T> src;
+        private final Predicate<? super T> accept;
+        private final Executor executor;
+        /**
+         * The loaded elements. Replaced by a larger copy when full, which happens after all
+         * previous elements were written, so a thread that has read {@link #count} always
+         * finds at least that many elements in this array.
+         */
+        private volatile Object[] elements = new Object[16];
+        private volatile int count = 0;
+        private volatile boolean done = false;
+        private volatile Throwable failure = null;
+        /**
+         * Number of threads waiting for more elements, modified while holding the monitor.
+         */
+        private volatile int waiting = 0;
+
+        /**
+         * Creates a new prefetcher, which must be started using {@link #start()}.
+         *
+         * @param src The source iterator
+         * @param accept Called on the prefetching thread for each element, to determine
+         *               whether it should be added
+         * @param executor The executor to run the prefetching on
+         */
+        Prefetcher(Iterator<? extends T> src, Predicate<? super T> accept, Executor executor) {
+            this.src = Arguments.checkNull(src, "src");
+            this.accept = accept;
+            this.executor = Arguments.checkNull(executor, "prefetchExecutor");
+        }
+
+        void start() {
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            if(RESUBMITTING.get() == this) {
+                RESUBMITTING.set(RAN_INLINE);
+                return;
+            }
+            try {
+                while(true) {
+                    for(int i = 0; i < PREFETCH_CHUNK_SIZE; i++) {
+                        if(!src.hasNext()) {
+                            finish();
+                            return;
+                        }
+                        T element = src.next();
+                        if(accept.test(element))
+                            append(element);
+                    }
+                    // Don't occupy a thread of the executor for the whole source
+                    RESUBMITTING.set(this);
+                    try {
+                        executor.execute(this);
+                        if(RESUBMITTING.get() != RAN_INLINE)
+                            return;
+                    } finally {
+                        RESUBMITTING.remove();
+                    }
+                }
+            } catch(Throwable t) {
+                failure = t;
+                finish();
+            }
+        }
+
+        private void append(T element) {
+            Object[] elements = this.elements;
+            int count = this.count;
+            if(count == elements.length)
+                this.elements = elements = Arrays.copyOf(elements, count * 2);
+            elements[count] = element;
+            this.count = count + 1;
+            if(waiting != 0) {
+                synchronized(this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            synchronized(this) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Returns the number of elements loaded so far.
+         */
+        int count() {
+            return count;
+        }
+
+        /**
+         * Waits until at least the given number of elements has been loaded, or the source
+         * has been consumed completely.
+         *
+         * @param min The number of elements needed
+         * @return The number of elements loaded, less than <code>min</code> only if the source
+         *         has fewer elements
+         */
+        int await(int min) {
+            if(count < min && !done) {
+                boolean interrupted = false;
+                synchronized(this) {
+                    waiting++;
+                    try {
+                        while(count < min && !done) {
+                            try {
+                                wait();
+                            } catch(InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                    } finally {
+                        waiting--;
+                    }
+                }
+                if(interrupted)
+                    Thread.currentThread().interrupt();
+            }
+            int count = this.count;
+            if(count < min && failure != null)
+                throw Utils.rethrow(failure);
+            return count;
+        }
+
+        /**
+         * Waits until the source has been consumed completely.
+         *
+         * @return The total number of elements
+         */
+        int awaitAll() {
+            return await(Integer.MAX_VALUE);
+        }
+
+        /**
+         * Returns the element at the given index, which must be less than a count previously
+         * returned by this prefetcher.
+         */
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            return (T) elements[index];
+        }
+
+        /**
+         * Returns a read-only view of the first <code>count</code> elements, which must have
+         * been loaded already.
+         */
+        @SuppressWarnings("unchecked")
+        java.util.List<T> loaded(int count) {
+            return Utils.view(Arrays.asList((T[]) elements).subList(0, count));
+        }
+
+        Iterator<T> iterator() {
+            return new Iterator<>() {
+                int i = 0;
+                @Override
+                public boolean hasNext() {
+                    return i < count || await(i + 1) > i;
+                }
+
+                @Override
+                public T next() {
+                    if(!hasNext()) throw new EmptyIteratorException();
+                    return get(i++);
+                }
+            };
+        }
+    }
+
+    private static final class PrefetchedList<E> extends AbstractImmutableList<E> {
+
+        private final Prefetcher<E> src;
+
+        private PrefetchedList(Iterator<? extends E> src, Executor executor) {
+            this.src = new Prefetcher<>(src, e -> true, executor);
+            this.src.start();
+        }
+
+        @Override
+        public int size() {
+            return src.awaitAll();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return src.await(1) == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) != -1;
+        }
+
+        @NotNull
+        @Override
+        public Iterator<E> iterator() {
+            return src.iterator();
+        }
+
+        @Override
+        public <T> T @NotNull [] toArray(T @NotNull [] a) {
+            return src.loaded(src.awaitAll()).toArray(a);
+        }
+
+        @Override
+        public boolean containsAll(@NotNull java.util.Collection<?> c) {
+            for(Object o : c)
+                if(!contains(o)) return false;
+            return true;
+        }
+
+        @Override
+        public E get(int index) {
+            if(index < 0 || src.await(index + 1) <= index)
+                throw new IndexOutOfBoundsException(index);
+            return src.get(index);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            for(int i = 0; i < src.await(i + 1); i++)
+                if(Objects.equals(o, src.get(i))) return i;
+            return -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            for(int i = src.awaitAll() - 1; i >= 0; i--)
+                if(Objects.equals(o, src.get(i))) return i;
+            return -1;
+        }
+
+        @NotNull
+        @Override
+        public ListIterator<E> listIterator() {
+            return listIterator(0);
+        }
+
+        @NotNull
+        @Override
+        public ListIterator<E> listIterator(int index) {
+            if(index < 0 || src.await(index) < index) throw new IndexOutOfBoundsException(index);
+            return new ListIterator<>() {
+                int i = index;
+                @Override
+                public boolean hasNext() {
+                    return src.await(i + 1) > i;
+                }
+
+                @Override
+                public E next() {
+                    if(!hasNext()) throw new EmptyIteratorException();
+                    return src.get(i++);
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return i > 0;
+                }
+
+                @Override
+                public E previous() {
+                    return get(--i);
+                }
+
+                @Override
+                public int nextIndex() {
+                    return i;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return i-1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new ImmutabilityException();
+                }
+
+                @Override
+                public void set(E e) {
+                    throw new ImmutabilityException();
+                }
+
+                @Override
+                public void add(E e) {
+                    throw new ImmutabilityException();
+                }
+            };
+        }
+
+        @NotNull
+        @Override
+        public java.util.List<E> subList(int fromIndex, int toIndex) {
+            if(src.await(toIndex) < toIndex) throw new IndexOutOfBoundsException(toIndex);
+            return src.loaded(toIndex).subList(fromIndex, toIndex);
+        }
+
+        @Override
+        public UnsupportedOperationException newException() {
+            return new ImmutabilityException();
+        }
+    }
+
+    private static final class PrefetchedSet<E> extends AbstractImmutableSet<E> {
+
+        private final java.util.Set<Object> seen = ConcurrentHashMap.newKeySet();
+        private final Prefetcher<E> src;
+
+        private PrefetchedSet(Iterator<? extends E> src, Executor executor) {
+            this.src = new Prefetcher<>(src, e -> seen.add(e != null ? e : NULL), executor);
+            this.src.start();
+        }
+
+        @Override
+        public int size() {
+            return src.awaitAll();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return src.await(1) == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Object key = o != null ? o : NULL;
+            int count;
+            do {
+                count = src.count();
+                if(seen.contains(key)) return true;
+            } while(src.await(count + 1) > count);
+            return seen.contains(key);
+        }
+
+        @NotNull
+        @Override
+        public Iterator<E> iterator() {
+            return src.iterator();
+        }
+
+        @Override
+        public <T> T @NotNull [] toArray(T @NotNull [] a) {
+            return src.loaded(src.awaitAll()).toArray(a);
+        }
+
+        @Override
+        public boolean containsAll(@NotNull java.util.Collection<?> c) {
+            for(Object o : c)
+                if(!contains(o)) return false;
+            return true;
+        }
+
+        @Override
+        public UnsupportedOperationException newException() {
+            return new ImmutabilityException();
+        }
+    }
+
+    private static final class PrefetchedMap<K,V> extends AbstractImmutableMap<K,V> {
+
+        private final java.util.Map<Object, Entry<K,V>> index = new ConcurrentHashMap<>();
+        private final Prefetcher<Entry<K,V>> src;
+        private final java.util.Set<K> keySet;
+        private final java.util.Collection<V> values;
+        private final java.util.Set<Entry<K,V>> entrySet;
+
+        private PrefetchedMap(Iterator<? extends Entry<? extends K, ? extends V>> src, Executor executor) {
+            this.src = new Prefetcher<Entry<K,V>>(
+                    new MappingIterator<>(src, e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue())),
+                    e -> index.putIfAbsent(e.getKey() != null ? e.getKey() : NULL, e) == null,
+                    executor
+            );
+            keySet = new View<>(Entry::getKey) {
+                @Override
+                public boolean contains(Object o) {
+                    return containsKey(o);
+                }
+            };
+            values = new ValuesView();
+            entrySet = new View<>(e -> e) {
+                @Override
+                public boolean contains(Object o) {
+                    if(!(o instanceof Entry)) return false;
+                    Entry<?,?> entry = (Entry<?,?>) o;
+                    Entry<K,V> e = find(entry.getKey());
+                    return e != null && Objects.equals(e.getValue(), entry.getValue());
+                }
+            };
+            this.src.start();
+        }
+
+        /**
+         * Returns the entry for the given key, waiting for it to be loaded if necessary.
+         */
+        private Entry<K,V> find(Object key) {
+            Object k = key != null ? key : NULL;
+            int count;
+            do {
+                count = src.count();
+                Entry<K,V> entry = index.get(k);
+                if(entry != null) return entry;
+            } while(src.await(count + 1) > count);
+            return index.get(k);
+        }
+
+        @Override
+        public int size() {
+            return src.awaitAll();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return src.await(1) == 0;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return find(key) != null;
+        }
+
+        @Override
+        public boolean containsValue(Object value) {
+            for(Iterator<Entry<K,V>> it = src.iterator(); it.hasNext();)
+                if(Objects.equals(value, it.next().getValue())) return true;
+            return false;
+        }
+
+        @Override
+        public V get(Object key) {
+            Entry<K,V> entry = find(key);
+            return entry != null ? entry.getValue() : null;
+        }
+
+        @NotNull
+        @Override
+        public java.util.Set<K> keySet() {
+            return keySet;
+        }
+
+        @NotNull
+        @Override
+        public java.util.Collection<V> values() {
+            return values;
+        }
+
+        @NotNull
+        @Override
+        public java.util.Set<Entry<K,V>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public UnsupportedOperationException newException() {
+            return new ImmutabilityException();
+        }
+
+        /**
+         * A set view of the entries mapped with the given function.
+         */
+        private abstract class View<T> extends AbstractImmutableSet<T> {
+
+            final Function<? super Entry<K,V>, ? extends T> extractor;
+
+            View(Function<? super Entry<K,V>, ? extends T> extractor) {
+                this.extractor = extractor;
+            }
+
+            @Override
+            public int size() {
+                return PrefetchedMap.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return PrefetchedMap.this.isEmpty();
+            }
+
+            @NotNull
+            @Override
+            public Iterator<T> iterator() {
+                return new MappingIterator<>(src.iterator(), extractor);
+            }
+
+            @Override
+            public <A> A @NotNull [] toArray(A @NotNull [] a) {
+                java.util.List<T> list = new ArrayList<>();
+                iterator().forEachRemaining(list::add);
+                return list.toArray(a);
+            }
+
+            @Override
+            public boolean containsAll(@NotNull java.util.Collection<?> c) {
+                for(Object o : c)
+                    if(!contains(o)) return false;
+                return true;
+            }
+
+            @Override
+            public UnsupportedOperationException newException() {
+                return new ImmutabilityException();
+            }
+        }
+
+        private final class ValuesView extends AbstractImmutableCollection<V> {
+
+            @Override
+            public int size() {
+                return PrefetchedMap.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return PrefetchedMap.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsValue(o);
+            }
+
+            @NotNull
+            @Override
+            public Iterator<V> iterator() {
+                return new MappingIterator<>(src.iterator(), Entry::getValue);
+            }
+
+            @Override
+            public <A> A @NotNull [] toArray(A @NotNull [] a) {
+                java.util.List<V> list = new ArrayList<>();
+                iterator().forEachRemaining(list::add);
+                return list.toArray(a);
+            }
+
+            @Override
+            public boolean containsAll(@NotNull java.util.Collection<?> c) {
+                for(Object o : c)
+                    if(!containsValue(o)) return false;
+                return true;
+            }
+
+            @Override
+            public UnsupportedOperationException newException() {
+                return new ImmutabilityException();
+            }
+        }
+    }
+
+
     private static final class OrderedCollectionIterator<T,E> implements Iterator<E> {
 
         private final java.util.Collection<? extends E> data;
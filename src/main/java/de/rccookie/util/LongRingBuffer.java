@@ -0,0 +1,336 @@
+package de.rccookie.util;
+
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link RingBuffer} for <code>long</code>s, which stores its elements without boxing.
+ * No out of range checks!
+ */
+public class LongRingBuffer implements Iterable<Long> {
+
+    /**
+     * The actual data. The length is always a power of two.
+     */
+    protected long[] data;
+    /**
+     * Head and tail pointer inside the data buffer; head points at the next free
+     * index, tail at the oldest item. If <code>head == tail</code> the buffer is empty.
+     */
+    protected int head = 0, tail = 0;
+
+    /**
+     * Creates a new ring buffer with a default capacity of 4 that will grow as needed.
+     */
+    public LongRingBuffer() {
+        data = new long[4];
+    }
+
+    /**
+     * Creates a new ring buffer.
+     * @param minDefaultCapacity The minimum capacity the buffer should have (the capacity will still grow if needed, only for performance). The actual capacity may be greater though.
+     */
+    public LongRingBuffer(int minDefaultCapacity) {
+        Arguments.checkRange(minDefaultCapacity, 1, null);
+        int cap = 2;
+        while(cap <= minDefaultCapacity) cap <<= 1;
+        data = new long[cap];
+    }
+
+    @Override
+    public String toString() {
+        if(head == tail) return "[]";
+        StringBuilder str = new StringBuilder().append('[');
+
+        str.append(data[tail]);
+        for(int i=(tail+1)&(data.length-1); i!=head; i = (i+1)&(data.length-1))
+            str.append(", ").append(data[i]);
+        return str.append(']').toString();
+    }
+
+    @Override
+    public int hashCode() {
+        // Equivalent to Arrays.hashCode(long[]) on range
+        int result = 1;
+        for(int i=tail; i!=head; i = (i+1)&(data.length-1))
+            result = 31 * result + Long.hashCode(data[i]);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(obj == this) return true;
+        if(!(obj instanceof LongRingBuffer)) return false;
+
+        LongRingBuffer b = (LongRingBuffer) obj;
+        int size = size();
+        if(size != b.size()) return false;
+
+        for(int i=0; i<size; i++)
+            if(get(i) != b.get(i)) return false;
+        return true;
+    }
+
+    /**
+     * Returns an array with the contents of the ring buffer, where the element at index 0 is the oldest item.
+     *
+     * @return This buffer as array
+     */
+    public long[] toArray() {
+        long[] arr = new long[size()];
+        copyTo(arr);
+        return arr;
+    }
+
+    /**
+     * Returns an iterator over this buffer, in the order oldest to newest item. The buffer must not be modified
+     * (also not using {@link #optimize()}) while the iterator is used, otherwise the behavior of the iterator
+     * is undefined.
+     *
+     * @return An iterator over the contents of this buffer
+     */
+    @NotNull
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            int i = tail;
+            @Override
+            public boolean hasNext() {
+                return i != head;
+            }
+
+            @Override
+            public long nextLong() {
+                if(i == head) throw new EmptyIteratorException();
+                long x = data[i];
+                i = (i+1) & (data.length-1);
+                return x;
+            }
+        };
+    }
+
+    /**
+     * Performs the given action for each element of the buffer, in the order oldest to
+     * newest item, without boxing the elements.
+     *
+     * @param action The action to perform
+     */
+    public void forEachLong(@NotNull LongConsumer action) {
+        for(int i=tail; i!=head; i = (i+1)&(data.length-1))
+            action.accept(data[i]);
+    }
+
+    /**
+     * Returns whether the buffer is empty.
+     *
+     * @return Whether the buffer contains no elements
+     */
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Returns the number of elements currently in the buffer.
+     *
+     * @return The current size of the buffer
+     */
+    public int size() {
+        return (head + data.length - tail) & (data.length-1);
+    }
+
+    /**
+     * Returns, but does not remove the next element in the buffer, that is, the
+     * element that has been in the buffer for the longest amount of time. Equivalent
+     * to <code>get(0)</code>.
+     *
+     * @return The next element
+     */
+    public long get() {
+        return data[tail];
+    }
+
+    /**
+     * Returns, but does not remove the element at the given index in the buffer. The
+     * element with index 0 is the element in the buffer for the longest amount of time,
+     * the element with index <code>size() - 1</code> is the element inserted the most
+     * lately.
+     *
+     * @param index The index of the element to get.
+     * @return The element at that index
+     */
+    public long get(int index) {
+        return data[(tail + index) & (data.length-1)];
+    }
+
+    /**
+     * Appends the given element to this buffer, growing its capacity if needed.
+     *
+     * @param x The element to append
+     * @return The element inserted, in other words, <code>x</code>
+     */
+    public long add(long x) {
+        if(((head + 1) & (data.length-1)) == tail)
+            realloc(data.length << 1, data.length - 1);
+        data[head] = x;
+        head = (head + 1) & (data.length-1);
+        return x;
+    }
+
+    /**
+     * Appends all the given elements to this buffer, growing its capacity if needed. Equivalent,
+     * but faster than calling {@link #add(long)} for each item individually.
+     *
+     * @param xs The items to be appended
+     */
+    public void add(long... xs) {
+        int size = size();
+        int newCap = data.length;
+        while(newCap <= size + xs.length) newCap <<= 1;
+
+        if(newCap != data.length) {
+            realloc(newCap, size); // Shifts tail to 0, there will be no wraparound
+            System.arraycopy(xs, 0, data, head, xs.length);
+            head += xs.length; // One index always stays free, so head is still in bounds
+        }
+        else if(head + xs.length <= data.length) { // Inserted block does not wrap around
+            System.arraycopy(xs, 0, data, head, xs.length);
+            head = (head + xs.length) & (data.length-1);
+        }
+        else { // Inserted block is split because it wraps around
+            System.arraycopy(xs, 0, data, head, data.length - head);
+            System.arraycopy(xs, data.length - head, data, 0, xs.length - data.length + head);
+            head = head + xs.length - data.length;
+        }
+    }
+
+    /**
+     * Removes the next element from the buffer, that is, the element that has been
+     * inserted the longest time ago.
+     *
+     * @return The removed element.
+     */
+    public long remove() {
+        long x = data[tail];
+        tail = (tail + 1) & (data.length-1);
+        return x;
+    }
+
+    /**
+     * Removes the given number of oldest items or as many as the buffer contains.
+     *
+     * @param maxCount The number of elements to remove, all elements will be removed if there are not as many items in the buffer
+     * @return The number of actually removed items
+     */
+    public int remove(int maxCount) {
+        int size = size();
+        if(maxCount >= size) {
+            head = tail = 0;
+            return size;
+        }
+        tail = (tail + maxCount) & (data.length-1);
+        return maxCount;
+    }
+
+    /**
+     * Removes all items from the buffer.
+     */
+    public void clear() {
+        head = tail = 0;
+    }
+
+    /**
+     * Decreases the internal buffer capacity if possible, without any change to the data. The capacity will be
+     * increased again if needed later. Only for optimization purposes.
+     */
+    public void optimize() {
+        int size = size();
+        int newCap = 2;
+        while(newCap <= size) newCap <<= 1; // '<=' because one index is always unused
+        if(newCap < data.length)
+            realloc(newCap, size);
+    }
+
+    /**
+     * Returns the sum of all elements in the buffer, computed in place.
+     *
+     * @return The sum of the elements, 0 if the buffer is empty. Overflows are not detected
+     *         and wrap around
+     */
+    public long sum() {
+        long sum = 0;
+        if(tail <= head) {
+            for(int i=tail; i<head; i++) sum += data[i];
+        }
+        else {
+            for(int i=tail; i<data.length; i++) sum += data[i];
+            for(int i=0; i<head; i++) sum += data[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the smallest element in the buffer, computed in place.
+     *
+     * @return The smallest element, {@link Long#MAX_VALUE} if the buffer is empty
+     */
+    public long min() {
+        long min = Long.MAX_VALUE;
+        if(tail <= head) {
+            for(int i=tail; i<head; i++) min = Math.min(min, data[i]);
+        }
+        else {
+            for(int i=tail; i<data.length; i++) min = Math.min(min, data[i]);
+            for(int i=0; i<head; i++) min = Math.min(min, data[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns the largest element in the buffer, computed in place.
+     *
+     * @return The largest element, {@link Long#MIN_VALUE} if the buffer is empty
+     */
+    public long max() {
+        long max = Long.MIN_VALUE;
+        if(tail <= head) {
+            for(int i=tail; i<head; i++) max = Math.max(max, data[i]);
+        }
+        else {
+            for(int i=tail; i<data.length; i++) max = Math.max(max, data[i]);
+            for(int i=0; i<head; i++) max = Math.max(max, data[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of the elements in the buffer, computed in place.
+     *
+     * @return The mean of the elements, {@link Double#NaN} if the buffer is empty
+     */
+    public double mean() {
+        int size = size();
+        return size == 0 ? Double.NaN : (double) sum() / size;
+    }
+
+    private void realloc(int newCap, int size) {
+        long[] newData = new long[newCap];
+        copyTo(newData);
+        data = newData;
+        tail = 0;
+        head = size;
+    }
+
+    /**
+     * Copies the contents of the buffer to the start of the given array, oldest item first.
+     */
+    private void copyTo(long[] arr) {
+        if(tail <= head)
+            System.arraycopy(data, tail, arr, 0, head - tail);
+        else {
+            System.arraycopy(data, tail, arr, 0, data.length - tail);
+            System.arraycopy(data, 0, arr, data.length - tail, head);
+        }
+    }
+}
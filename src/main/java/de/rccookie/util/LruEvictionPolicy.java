@@ -0,0 +1,46 @@
+package de.rccookie.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Eviction policy which evicts the least recently used entry.
+ *
+ * @param <K> The key type
+ */
+final class LruEvictionPolicy<K> implements Cache.EvictionPolicy<K> {
+
+    /**
+     * All keys in access order, mapped to <code>null</code>.
+     */
+    private final LinkedHashMap<K,Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void initialize(long maxWeight) { }
+
+    @Override
+    public void onInsert(K key, long weight) {
+        order.put(key, null);
+    }
+
+    @Override
+    public void onAccess(K key) {
+        order.get(key);
+    }
+
+    @Override
+    public void onUpdate(K key, long oldWeight, long newWeight) {
+        order.get(key);
+    }
+
+    @Override
+    public void onRemove(K key, long weight) {
+        order.remove(key);
+    }
+
+    @Override
+    public K selectVictim() {
+        Iterator<K> it = order.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
@@ -0,0 +1,65 @@
+package de.rccookie.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.management.NotificationEmitter;
+
+/**
+ * Notifies caches when the heap is running full, using the collection usage thresholds of
+ * the heap memory pools. A notification is emitted when the heap usage after a garbage
+ * collection exceeds 85% of the maximum heap size, unless the application has configured
+ * different thresholds itself.
+ */
+final class MemoryPressure {
+
+    private MemoryPressure() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final double THRESHOLD = 0.85;
+
+    /**
+     * The registered caches, weakly referenced such that caches which are no longer used
+     * can be garbage collected.
+     */
+    private static final Set<Cache<?,?>> CACHES = Collections.newSetFromMap(new WeakHashMap<>());
+    private static boolean installed = false;
+
+    static synchronized void register(Cache<?,?> cache) {
+        if(!installed) {
+            installed = true;
+            install();
+        }
+        CACHES.add(cache);
+    }
+
+    private static void install() {
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported() || pool.getCollectionUsageThreshold() != 0)
+                continue;
+            long max = pool.getUsage().getMax();
+            if(max > 0)
+                pool.setCollectionUsageThreshold((long) (max * THRESHOLD));
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener((notification, handback) -> {
+            if(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType()))
+                notifyCaches();
+        }, null, null);
+    }
+
+    private static void notifyCaches() {
+        List<Cache<?,?>> caches;
+        synchronized(MemoryPressure.class) {
+            caches = new ArrayList<>(CACHES);
+        }
+        for(Cache<?,?> cache : caches)
+            cache.onMemoryPressure();
+    }
+}
@@ -0,0 +1,306 @@
+package de.rccookie.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+/**
+ * A lock-free queue for handing elements from any number of producer threads to exactly one
+ * consumer thread. Like {@link RingBuffer}, the elements are stored in an array with a
+ * power-of-two length, indexed by ever increasing positions. Producers claim a position
+ * using a compare-and-set on the shared producer position, and then publish the element
+ * into the claimed slot.
+ *
+ * <p>A bounded buffer rejects elements when it is full. A growable buffer instead links a
+ * new buffer of twice the size, up to the given maximum capacity; the consumer follows the
+ * link once it has consumed all elements of the old buffer. While one producer links the
+ * new buffer, the other producers wait for it to complete. The positions of producers and
+ * consumer are kept in separate cache lines.</p>
+ *
+ * <p>{@link #offer(Object)} may be called by any thread, but {@link #poll()}, {@link #peek()}
+ * and {@link #drainTo(Consumer, int)} must only be called by a single thread at a time. If
+ * a producer has claimed a position but not yet published its element, the consumer briefly
+ * waits for it, so that elements are always received in the order of their positions.
+ * <code>null</code> elements are not supported.</p>
+ *
+ * @param <T> Content type
+ * @see SpscRingBuffer
+ */
+public class MpscRingBuffer<T> {
+
+    /**
+     * Marker written into the old buffer at the position where the consumer has to continue
+     * in the next buffer.
+     */
+    private static final Object JUMP = new Object();
+
+    private final int maxCapacity;
+    /**
+     * Twice the position of the next element to be added. The lowest bit is set while the
+     * buffer is being resized.
+     */
+    private final PaddedSequence producerIndex = new PaddedSequence();
+    /**
+     * Cached position up to which producers can add elements without checking the consumer
+     * position.
+     */
+    private final PaddedSequence producerLimit = new PaddedSequence();
+    private final PaddedSequence consumerIndex = new PaddedSequence();
+    /**
+     * The buffer the producers write to. Each buffer has one extra element at the end for the
+     * link to the next buffer.
+     */
+    private volatile AtomicReferenceArray<Object> producerBuffer;
+    /**
+     * The buffer the consumer reads from, only accessed by the consumer.
+     */
+    private AtomicReferenceArray<Object> consumerBuffer;
+
+    /**
+     * Creates a new bounded buffer.
+     *
+     * @param capacity The minimum capacity of the buffer, will be rounded up to a power of two
+     */
+    public MpscRingBuffer(@Range(from = 1, to = 1 << 30) int capacity) {
+        this(capacity, capacity);
+    }
+
+    /**
+     * Creates a new growable buffer.
+     *
+     * @param initialCapacity The minimum initial capacity of the buffer, will be rounded up
+     *                        to a power of two
+     * @param maxCapacity The minimum capacity the buffer may grow to, will be rounded up to
+     *                    a power of two
+     */
+    public MpscRingBuffer(@Range(from = 1, to = 1 << 30) int initialCapacity, @Range(from = 1, to = 1 << 30) int maxCapacity) {
+        Arguments.checkRange(initialCapacity, 1, (1 << 30) + 1);
+        Arguments.checkRange(maxCapacity, initialCapacity, (1 << 30) + 1);
+        this.maxCapacity = powerOfTwo(maxCapacity);
+        int capacity = powerOfTwo(initialCapacity);
+        producerBuffer = consumerBuffer = new AtomicReferenceArray<>(capacity + 1);
+        producerLimit.set(usableCapacity(capacity));
+    }
+
+    @Override
+    public String toString() {
+        return "MpscRingBuffer[" + size() + "/" + maxCapacity + "]";
+    }
+
+    /**
+     * Appends the given element, if the buffer is not full. May be called by any thread.
+     *
+     * @param t The element to append
+     * @return Whether the element was added, <code>false</code> if the buffer is full
+     */
+    public boolean offer(@NotNull T t) {
+        Arguments.checkNull(t, "t");
+        while(true) {
+            long limit = producerLimit.get();
+            long pIndex = producerIndex.get();
+            if((pIndex & 1) != 0) {
+                // Another producer is resizing
+                Thread.onSpinWait();
+                continue;
+            }
+            // Read after the index, such that the buffer matches the index if no resize
+            // happens in the meantime, in which case the compare-and-set below fails
+            AtomicReferenceArray<Object> buffer = producerBuffer;
+            long p = pIndex >> 1;
+            int capacity = buffer.length() - 1;
+
+            if(p >= limit) {
+                long newLimit = consumerIndex.get() + usableCapacity(capacity);
+                if(newLimit > p) {
+                    producerLimit.compareAndSet(limit, newLimit);
+                    continue;
+                }
+                if(capacity == maxCapacity)
+                    return false;
+                if(producerIndex.compareAndSet(pIndex, pIndex + 1)) {
+                    resize(buffer, p, t);
+                    return true;
+                }
+                continue;
+            }
+
+            if(producerIndex.compareAndSet(pIndex, pIndex + 2)) {
+                buffer.setRelease((int) p & (capacity - 1), t);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Links a new buffer of twice the size and adds the given element at position <code>p</code>
+     * in it. Only called by the producer which marked the producer index as resizing.
+     */
+    private void resize(AtomicReferenceArray<Object> buffer, long p, T t) {
+        int oldCapacity = buffer.length() - 1;
+        int capacity = oldCapacity << 1;
+        AtomicReferenceArray<Object> next = new AtomicReferenceArray<>(capacity + 1);
+        producerBuffer = next;
+        producerLimit.set(consumerIndex.get() + usableCapacity(capacity));
+        next.setPlain((int) p & (capacity - 1), t);
+        buffer.setPlain(oldCapacity, next);
+        // Publishes the writes above to the consumer. The slot is always free because a
+        // buffer which can still grow is never filled completely.
+        buffer.setRelease((int) p & (oldCapacity - 1), JUMP);
+        producerIndex.setRelease((p + 1) << 1);
+    }
+
+    /**
+     * Returns the number of elements a buffer with the given capacity may hold before it
+     * has to be resized. One slot is kept free for the jump marker unless the buffer is at
+     * its maximum capacity.
+     */
+    private long usableCapacity(int capacity) {
+        return capacity == maxCapacity ? capacity : capacity - 1;
+    }
+
+    /**
+     * Removes and returns the oldest element. Must only be called by the consumer thread.
+     *
+     * @return The removed element, or <code>null</code> if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T poll() {
+        AtomicReferenceArray<Object> buffer = consumerBuffer;
+        long c = consumerIndex.get();
+        int offset = (int) c & (buffer.length() - 2);
+        Object t = awaitElement(buffer, offset, c);
+        if(t == null)
+            return null;
+        if(t == JUMP) {
+            buffer = consumerBuffer = next(buffer);
+            offset = (int) c & (buffer.length() - 2);
+            t = buffer.getPlain(offset);
+        }
+        buffer.setRelease(offset, null);
+        consumerIndex.setRelease(c + 1);
+        return (T) t;
+    }
+
+    /**
+     * Returns, but does not remove the oldest element. Must only be called by the consumer
+     * thread.
+     *
+     * @return The oldest element, or <code>null</code> if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T peek() {
+        AtomicReferenceArray<Object> buffer = consumerBuffer;
+        long c = consumerIndex.get();
+        Object t = awaitElement(buffer, (int) c & (buffer.length() - 2), c);
+        if(t == JUMP) {
+            buffer = consumerBuffer = next(buffer);
+            t = buffer.getPlain((int) c & (buffer.length() - 2));
+        }
+        return (T) t;
+    }
+
+    /**
+     * Returns the element at the given offset of the consumer buffer, waiting for it to be
+     * published if a producer has already claimed its position.
+     *
+     * @return The element, or <code>null</code> if no producer has claimed the position yet
+     */
+    private Object awaitElement(AtomicReferenceArray<Object> buffer, int offset, long c) {
+        Object t = buffer.getAcquire(offset);
+        if(t != null)
+            return t;
+        if(c == producerIndex.get() >> 1)
+            return null;
+        do {
+            Thread.onSpinWait();
+            t = buffer.getAcquire(offset);
+        } while(t == null);
+        return t;
+    }
+
+    /**
+     * Removes up to the given number of elements and passes them to the given consumer, in
+     * the order they were added. Must only be called by the consumer thread.
+     *
+     * @param consumer The consumer to pass the elements to
+     * @param maxCount The maximum number of elements to remove
+     * @return The number of removed elements
+     */
+    public int drainTo(@NotNull Consumer<? super T> consumer, @Range(from = 0) int maxCount) {
+        Arguments.checkNull(consumer, "consumer");
+        Arguments.checkRange(maxCount, 0, null);
+        int count = 0;
+        T t;
+        while(count < maxCount && (t = poll()) != null) {
+            consumer.accept(t);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of elements in the buffer. If the buffer is used concurrently,
+     * the result is only an estimate.
+     *
+     * @return The current size of the buffer
+     */
+    public int size() {
+        return size(producerIndex, 1, consumerIndex);
+    }
+
+    /**
+     * Returns whether the buffer is empty. If the buffer is used concurrently, the result
+     * is only an estimate.
+     *
+     * @return Whether the buffer contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get() >> 1;
+    }
+
+    /**
+     * Returns the maximum capacity of the buffer.
+     *
+     * @return The maximum number of elements the buffer can hold
+     */
+    public int capacity() {
+        return maxCapacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Object> next(AtomicReferenceArray<Object> buffer) {
+        return (AtomicReferenceArray<Object>) buffer.getPlain(buffer.length() - 1);
+    }
+
+    /**
+     * Returns the smallest power of two, but at least 2, which is not less than the given
+     * capacity.
+     */
+    static int powerOfTwo(int capacity) {
+        int cap = 2;
+        while(cap < capacity) cap <<= 1;
+        return cap;
+    }
+
+    /**
+     * Returns the distance between the given positions, retrying until the consumer position
+     * did not change while reading the producer position.
+     *
+     * @param producerShift The number of bits the producer position is shifted by
+     */
+    static int size(PaddedSequence producerIndex, int producerShift, PaddedSequence consumerIndex) {
+        long after = consumerIndex.get();
+        while(true) {
+            long before = after;
+            long p = producerIndex.get() >> producerShift;
+            after = consumerIndex.get();
+            if(before == after)
+                return (int) Math.max(0, Math.min(Integer.MAX_VALUE, p - after));
+        }
+    }
+}
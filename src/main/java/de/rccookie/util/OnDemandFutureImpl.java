@@ -1,6 +1,8 @@
 package de.rccookie.util;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import de.rccookie.util.function.Computation;
@@ -32,6 +34,12 @@ public class OnDemandFutureImpl<V> extends ThreadedFutureImpl<V> {
         return super.waitFor();
     }
 
+    @Override
+    public V waitFor(long timeout, TimeUnit unit) throws TimeoutException, IllegalStateException {
+        startComputation();
+        return super.waitFor(timeout, unit);
+    }
+
     @Override
     public Future<V> then(Consumer<? super V> action) {
         startComputation();
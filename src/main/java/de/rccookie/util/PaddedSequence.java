@@ -0,0 +1,43 @@
+package de.rccookie.util;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A volatile <code>long</code> counter surrounded by padding, such that it occupies a cache
+ * line of its own. This prevents a counter written by one thread from invalidating the cache
+ * line of counters written by other threads (false sharing).
+ */
+@SuppressWarnings("unused")
+final class PaddedSequence {
+
+    private static final AtomicLongFieldUpdater<PaddedSequence> VALUE = AtomicLongFieldUpdater.newUpdater(PaddedSequence.class, "value");
+
+    private long p01, p02, p03, p04, p05, p06, p07;
+    private volatile long value = 0;
+    private long p11, p12, p13, p14, p15, p16, p17;
+
+    @Override
+    public String toString() {
+        return Long.toString(value);
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Sets the value with release semantics, which is cheaper than a volatile write, and
+     * sufficient if the only writer is the current thread.
+     */
+    void setRelease(long value) {
+        VALUE.lazySet(this, value);
+    }
+
+    boolean compareAndSet(long expected, long value) {
+        return VALUE.compareAndSet(this, expected, value);
+    }
+}
@@ -1,31 +1,71 @@
 package de.rccookie.util;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.IntStream;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import de.rccookie.util.function.ThrowingBiConsumer;
+import de.rccookie.util.function.ThrowingBiFunction;
 import de.rccookie.util.function.ThrowingConsumer;
 import de.rccookie.util.function.ThrowingFunction;
+import de.rccookie.util.function.ThrowingIntBiConsumer;
+import de.rccookie.util.function.ThrowingIntBiFunction;
+import de.rccookie.util.function.ThrowingIntBiPredicate;
 import de.rccookie.util.function.ThrowingIntConsumer;
 import de.rccookie.util.function.ThrowingIntFunction;
 import de.rccookie.util.function.ThrowingIntPredicate;
+import de.rccookie.util.function.ThrowingIntToDoubleFunction;
+import de.rccookie.util.function.ThrowingIntToIntFunction;
+import de.rccookie.util.function.ThrowingIntToLongFunction;
 import de.rccookie.util.function.ThrowingLongConsumer;
 import de.rccookie.util.function.ThrowingLongFunction;
 import de.rccookie.util.function.ThrowingLongPredicate;
+import de.rccookie.util.function.ThrowingLongToDoubleFunction;
+import de.rccookie.util.function.ThrowingLongToIntFunction;
+import de.rccookie.util.function.ThrowingLongToLongFunction;
+import de.rccookie.util.function.ThrowingObjIntConsumer;
+import de.rccookie.util.function.ThrowingObjIntFunction;
+import de.rccookie.util.function.ThrowingObjLongConsumer;
+import de.rccookie.util.function.ThrowingObjLongFunction;
 import de.rccookie.util.function.ThrowingPredicate;
 import de.rccookie.util.function.ThrowingRunnable;
 import de.rccookie.util.function.ThrowingSupplier;
+import de.rccookie.util.function.ThrowingToDoubleFunction;
+import de.rccookie.util.function.ThrowingToIntFunction;
+import de.rccookie.util.function.ThrowingToLongFunction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
 
 /**
  * Utility class for parallel loops.
+ *
+ * <p>Loops may be nested, i.e. the body of a parallel loop may itself run parallel loops. Nested
+ * loops do not start additional threads, instead their workers are submitted to the common
+ * {@link ForkJoinPool}, and any workers which have not been picked up by another thread are run
+ * by the thread that started the nested loop. Loops nested deeper than {@link #getMaxNestingDepth()}
+ * are executed sequentially on the calling thread. This keeps the number of active threads bounded
+ * by the parallelism of the common pool, even for recursive algorithms.</p>
  */
 public final class Parallel {
 
@@ -58,6 +98,54 @@ public final class Parallel {
         }
     };
 
+    /**
+     * The nesting depth of the loop the current thread is working for, plus one. 0 if the thread is
+     * not working for any parallel loop.
+     */
+    private static final ThreadLocal<IntWrapper> DEPTH = ThreadLocal.withInitial(IntWrapper::new);
+
+    private static volatile int maxNestingDepth = 2;
+
+
+    /**
+     * Returns the maximum number of nested loops that get executed in parallel. Loops nested
+     * any deeper will be executed sequentially on the thread that started them.
+     *
+     * @return The maximum nesting depth for parallel execution
+     * @see #setMaxNestingDepth(int)
+     */
+    public static int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    /**
+     * Sets the maximum number of nested loops that get executed in parallel. A loop which is
+     * started by a thread that is currently working for <code>depth</code> nested loops will be
+     * executed in parallel only if <code>depth &lt; maxDepth</code>, otherwise it will be executed
+     * sequentially on the calling thread, regardless of its configured number of threads.
+     *
+     * <p>The default is 2, which means that a parallel loop within a parallel loop is still executed
+     * in parallel, but any loops nested deeper run inline. A value of 1 disables nested parallelism
+     * entirely. Nested loops that are executed in parallel always share the common pool rather than
+     * starting additional threads.</p>
+     *
+     * @param maxDepth The maximum nesting depth for parallel execution, at least 1
+     */
+    public static void setMaxNestingDepth(@Range(from = 1) int maxDepth) {
+        maxNestingDepth = Arguments.checkRange(maxDepth, 1, null);
+    }
+
+    /**
+     * Returns the number of parallel loops the current thread is currently working for. This is
+     * 0 if the calling thread is not a worker of any parallel loop, 1 if it is executing the body
+     * of a loop which is not nested, and so on.
+     *
+     * @return The nesting depth of the current thread
+     */
+    public static int nestingDepth() {
+        return DEPTH.get().value;
+    }
+
 
     /**
      * The parallel equivalent to
@@ -301,10 +389,252 @@ public final class Parallel {
     }
 
 
+    /**
+     * Applies the given function to every element of the given array in parallel, and returns the
+     * results in the order of the array.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the array
+     * @throws E If the function throws an exception
+     * @see Foreach#map(ThrowingFunction)
+     */
+    public static <T, R, E extends Throwable> ListStream<R> map(T[] source, ThrowingFunction<? super T, ? extends R, ? extends E> body) throws E {
+        return foreach(source).map(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given list in parallel, and returns the
+     * results in the order of the list.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the list
+     * @throws E If the function throws an exception
+     * @see Foreach#map(ThrowingFunction)
+     */
+    public static <T, R, E extends Throwable> ListStream<R> map(List<? extends T> source, ThrowingFunction<? super T, ? extends R, ? extends E> body) throws E {
+        return Parallel.<T>foreach(source).map(body);
+    }
+
+    /**
+     * Applies the given function to every number from <code>0</code> (inclusive) to <code>count</code>
+     * (exclusive) in parallel, and returns the results in ascending order.
+     *
+     * @param count The number of results to compute
+     * @param body The function to apply to every number (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all numbers, in ascending order
+     * @throws E If the function throws an exception
+     * @see For#map(ThrowingIntFunction)
+     */
+    public static <R, E extends Throwable> ListStream<R> map(int count, ThrowingIntFunction<? extends R, ? extends E> body) throws E {
+        return For(count).map(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given array in parallel, and returns the
+     * results in the order of the array.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the array
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToInt(ThrowingToIntFunction)
+     */
+    public static <T, E extends Throwable> int[] mapToInt(T[] source, ThrowingToIntFunction<? super T, ? extends E> body) throws E {
+        return foreach(source).mapToInt(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given list in parallel, and returns the
+     * results in the order of the list.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the list
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToInt(ThrowingToIntFunction)
+     */
+    public static <T, E extends Throwable> int[] mapToInt(List<? extends T> source, ThrowingToIntFunction<? super T, ? extends E> body) throws E {
+        return Parallel.<T>foreach(source).mapToInt(body);
+    }
+
+    /**
+     * Applies the given function to every number from <code>0</code> (inclusive) to <code>count</code>
+     * (exclusive) in parallel, and returns the results in ascending order.
+     *
+     * @param count The number of results to compute
+     * @param body The function to apply to every number (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all numbers, in ascending order
+     * @throws E If the function throws an exception
+     * @see For#mapToInt(ThrowingIntToIntFunction)
+     */
+    public static <E extends Throwable> int[] mapToInt(int count, ThrowingIntToIntFunction<? extends E> body) throws E {
+        return For(count).mapToInt(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given array in parallel, and returns the
+     * results in the order of the array.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the array
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToLong(ThrowingToLongFunction)
+     */
+    public static <T, E extends Throwable> long[] mapToLong(T[] source, ThrowingToLongFunction<? super T, ? extends E> body) throws E {
+        return foreach(source).mapToLong(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given list in parallel, and returns the
+     * results in the order of the list.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the list
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToLong(ThrowingToLongFunction)
+     */
+    public static <T, E extends Throwable> long[] mapToLong(List<? extends T> source, ThrowingToLongFunction<? super T, ? extends E> body) throws E {
+        return Parallel.<T>foreach(source).mapToLong(body);
+    }
+
+    /**
+     * Applies the given function to every number from <code>0</code> (inclusive) to <code>count</code>
+     * (exclusive) in parallel, and returns the results in ascending order.
+     *
+     * @param count The number of results to compute
+     * @param body The function to apply to every number (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all numbers, in ascending order
+     * @throws E If the function throws an exception
+     * @see For#mapToLong(ThrowingIntToLongFunction)
+     */
+    public static <E extends Throwable> long[] mapToLong(int count, ThrowingIntToLongFunction<? extends E> body) throws E {
+        return For(count).mapToLong(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given array in parallel, and returns the
+     * results in the order of the array.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the array
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToDouble(ThrowingToDoubleFunction)
+     */
+    public static <T, E extends Throwable> double[] mapToDouble(T[] source, ThrowingToDoubleFunction<? super T, ? extends E> body) throws E {
+        return foreach(source).mapToDouble(body);
+    }
+
+    /**
+     * Applies the given function to every element of the given list in parallel, and returns the
+     * results in the order of the list.
+     *
+     * @param source The elements to map
+     * @param body The function to apply to every element (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all elements, in the order of the list
+     * @throws E If the function throws an exception
+     * @see Foreach#mapToDouble(ThrowingToDoubleFunction)
+     */
+    public static <T, E extends Throwable> double[] mapToDouble(List<? extends T> source, ThrowingToDoubleFunction<? super T, ? extends E> body) throws E {
+        return Parallel.<T>foreach(source).mapToDouble(body);
+    }
+
+    /**
+     * Applies the given function to every number from <code>0</code> (inclusive) to <code>count</code>
+     * (exclusive) in parallel, and returns the results in ascending order.
+     *
+     * @param count The number of results to compute
+     * @param body The function to apply to every number (in an arbitrary order, on an arbitrary thread)
+     * @return The results for all numbers, in ascending order
+     * @throws E If the function throws an exception
+     * @see For#mapToDouble(ThrowingIntToDoubleFunction)
+     */
+    public static <E extends Throwable> double[] mapToDouble(int count, ThrowingIntToDoubleFunction<? extends E> body) throws E {
+        return For(count).mapToDouble(body);
+    }
+
+    /**
+     * The parallel equivalent to
+     * <pre>
+     * for(int i = 0; i < rows; i++) {
+     *     for(int j = 0; j < cols; j++) {
+     *         body.accept(i, j);
+     *     }
+     * }</pre>
+     * The iteration space is split into rectangular tiles which are distributed across
+     * the threads, such that neighboring iterations are usually executed by the same thread.
+     *
+     * @param rows The number of iterations of the outer loop
+     * @param cols The number of iterations of the inner loop
+     * @param body The code to execute for every pair of numbers (in an arbitrary order, on an arbitrary thread)
+     * @throws E If the loop body throws an exception
+     */
+    public static <E extends Throwable> void For2D(int rows, int cols, ThrowingIntBiConsumer<? extends E> body) throws E {
+        For2D(rows, cols).run(body);
+    }
+
+    /**
+     * Returns the parallel version of the nested loop
+     * <pre>
+     * for(int i = 0; i < rows; i++)
+     *     for(int j = 0; j < cols; j++)</pre>
+     * to be further customized and then executed. This method call itself does
+     * not start the loop execution.
+     *
+     * @param rows The number of iterations of the outer loop
+     * @param cols The number of iterations of the inner loop
+     */
+    public static For2D For2D(int rows, int cols) {
+        return new For2D(rows, cols);
+    }
+
+    /**
+     * The parallel equivalent to the nested loop
+     * <pre>
+     * for(int i0 = 0; i0 < dims[0]; i0++) {
+     *     for(int i1 = 0; i1 < dims[1]; i1++) {
+     *         ...
+     *             body.accept(new int[] { i0, i1, ... });
+     *     }
+     * }</pre>
+     * The iteration space is split into tiles which are distributed across the threads,
+     * such that neighboring iterations are usually executed by the same thread.
+     *
+     * @param dims The number of iterations in each dimension, from the outermost to the innermost loop
+     * @param body The code to execute for every index (in an arbitrary order, on an arbitrary thread).
+     *             The index array passed is reused between iterations and must not be modified.
+     * @throws E If the loop body throws an exception
+     */
+    public static <E extends Throwable> void ForND(int[] dims, ThrowingConsumer<? super int[], ? extends E> body) throws E {
+        ForND(dims).run(body);
+    }
+
+    /**
+     * Returns the parallel version of the nested loop
+     * <pre>
+     * for(int i0 = 0; i0 < dims[0]; i0++)
+     *     for(int i1 = 0; i1 < dims[1]; i1++)
+     *         ...</pre>
+     * to be further customized and then executed. This method call itself does
+     * not start the loop execution.
+     *
+     * @param dims The number of iterations in each dimension, from the outermost to the innermost loop
+     */
+    public static ForND ForND(int... dims) {
+        return new ForND(dims);
+    }
+
+
 
 
     private static abstract class Loop {
         abstract int threads();
+        abstract Executor executor();
+        abstract LoopStats stats();
     }
 
     /**
@@ -318,9 +648,9 @@ public final class Parallel {
      * and the option to break out of the loop early when a specific condition is met.
      *
      * <p>The order in which the loop is traversed is up to implementation, each iteration may be
-     * performed on an arbitrary thread at an arbitrary time during the loop. The options {@link #threads(int)}
-     * and {@link #balanced(boolean)} may give slight control over this, but the exact implementation
-     * is not specified.</p>
+     * performed on an arbitrary thread at an arbitrary time during the loop. The options {@link #threads(int)},
+     * {@link #balanced(boolean)}, {@link #stealing(boolean)} and {@link #schedule(Schedule)} may give slight
+     * control over this, but the exact implementation is not specified.</p>
      *
      * <p>The bounds of the loop can be specified as <code>long</code>. For convenience, the iteration
      * methods do however exist for both <code>int</code> and <code>long</code> (e.g. {@link #run(ThrowingIntConsumer)}
@@ -332,6 +662,13 @@ public final class Parallel {
      * <p>If the loop body throws any kind of exception (checked or unchecked), the loop will terminate
      * early and the exception will be rethrown on the calling thread.</p>
      *
+     * <p>Results can be aggregated using the reduction methods like {@link #reduce(Object, ThrowingObjIntFunction, BinaryOperator)},
+     * {@link #sumLong(ThrowingIntToLongFunction)} or {@link #collect(Supplier, ThrowingObjIntConsumer, BiConsumer)}.
+     * Every worker thread accumulates into its own private state, and the partial results are only
+     * combined once the loop has finished, such that no synchronization is needed per iteration.
+     * The results of all iterations can also be collected in iteration order using {@link #map(ThrowingIntFunction)}
+     * or one of its primitive variants.</p>
+     *
      * <p>Instances of this class can safely be reused. Note however that changing parameters of an
      * instance which is currently executing a loop may or may not affect that loop. Neither case will
      * cause an error, but may cause unintended behavior.</p>
@@ -343,6 +680,10 @@ public final class Parallel {
         private long increment;
         private int numThreads = -1;
         private boolean balanced = false;
+        private boolean stealing = false;
+        private Schedule schedule = null;
+        private Executor executor = null;
+        private LoopStats stats = null;
 
 
         For(long count) {
@@ -422,6 +763,30 @@ public final class Parallel {
             return this;
         }
 
+        @Override
+        Executor executor() {
+            return executor;
+        }
+
+        /**
+         * Sets the executor on which the worker threads of this for loop should run. The calling
+         * thread always participates in the loop execution as one of the workers, and also runs
+         * workers itself which have not been started by the executor by the time it finished its
+         * own work. Thus, the loop will also complete if the executor is busy or rejects tasks.
+         *
+         * <p>If set to <code>null</code> (the default), the common {@link ForkJoinPool} will be
+         * used, or, if more threads were requested than it provides, a library-managed pool of
+         * worker threads which are reused across loops and terminate after being idle for a
+         * while.</p>
+         *
+         * @param executor The executor to run the workers on, or <code>null</code> to use the default
+         * @return This for loop
+         */
+        public For executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
         /**
          * Controls whether the iterations should be split evenly across all threads, or whether the
          * workload time should be distributed as evenly as possible. The first may be faster if all
@@ -436,6 +801,10 @@ public final class Parallel {
          */
         public For balanced(boolean balanced) {
             this.balanced = balanced;
+            if(balanced) {
+                stealing = false;
+                schedule = null;
+            }
             return this;
         }
 
@@ -456,6 +825,84 @@ public final class Parallel {
             return balanced(true);
         }
 
+        /**
+         * Controls whether the iterations should be distributed using work stealing. If enabled,
+         * every thread initially owns an equally sized, contiguous part of the loop range, from
+         * which it takes iterations in chunks that shrink with the remaining size of its part.
+         * Once a thread has run out of iterations, it steals half of the remaining iterations of
+         * the thread with the most work left. This keeps the synchronization overhead very low
+         * while still balancing uneven workloads, and is thus particularly suited for loops with
+         * many iterations where each iteration only takes very little time. The default is
+         * <code>false</code>. Enabling work stealing disables {@link #balanced(boolean)} and
+         * {@link #schedule(Schedule)}.
+         *
+         * @param stealing Whether to distribute the iterations using work stealing
+         * @return This for loop
+         */
+        public For stealing(boolean stealing) {
+            this.stealing = stealing;
+            if(stealing) {
+                balanced = false;
+                schedule = null;
+            }
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>stealing(true)</code>.
+         *
+         * <p>Sets that the iterations should be distributed using work stealing: every thread
+         * works through its own contiguous part of the loop range in chunks, and takes over
+         * half of the remaining iterations of another thread once its own part is exhausted.
+         * This behavior may improve performance significantly if the loop has many iterations
+         * which each only take very little time.</p>
+         *
+         * @return This for loop
+         */
+        public For stealing() {
+            return stealing(true);
+        }
+
+        @Override
+        LoopStats stats() {
+            return stats;
+        }
+
+        /**
+         * Sets the statistics object into which a report will be recorded every time this for loop
+         * is executed, see {@link LoopStats}. Collecting statistics disables some optimizations and
+         * adds a small overhead to every iteration. By default, no statistics are collected.
+         *
+         * @param stats The statistics to record the executions into, or <code>null</code> to disable
+         *              collecting statistics
+         * @return This for loop
+         */
+        public For stats(LoopStats stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        /**
+         * Sets the policy by which the iterations are split into chunks and handed out to the
+         * threads, similar to the <code>schedule</code> clause of OpenMP. Every chunk is a
+         * contiguous range of iterations executed by a single thread, such that threads only
+         * have to synchronize once per chunk rather than once per iteration. See {@link Schedule}
+         * for the available policies. Setting a schedule disables {@link #balanced(boolean)} and
+         * {@link #stealing(boolean)}.
+         *
+         * @param schedule The scheduling policy to use, or <code>null</code> to use the default
+         *                 distribution
+         * @return This for loop
+         */
+        public For schedule(Schedule schedule) {
+            this.schedule = schedule;
+            if(schedule != null) {
+                balanced = false;
+                stealing = false;
+            }
+            return this;
+        }
+
         /**
          * Executes this for loop, stopping early once any iteration has fulfilled the condition, that
          * is, it returned <code>true</code>. This is equivalent to the sequential loop
@@ -472,7 +919,30 @@ public final class Parallel {
          * @throws E If thrown by the loop body
          */
         public <E extends Throwable> boolean anyL(ThrowingLongPredicate<? extends E> body) throws E {
-            LoopExecution<E,?> execution = balanced ? new BalancedForExecution<>(this, body) : new ForExecution<>(this, body);
+            LoopExecution<E,?> execution;
+            if(schedule != null)
+                execution = new ScheduledForExecution<>(this, body);
+            else if(stealing)
+                execution = new StealingForExecution<>(this, body);
+            else if(balanced)
+                execution = new BalancedForExecution<>(this, body);
+            else execution = new ForExecution<>(this, body);
+            return execution.execute();
+        }
+
+        /**
+         * Executes this for loop where every worker uses its own loop body, obtained once per
+         * worker from the given supplier. Returns whether any iteration returned <code>true</code>.
+         */
+        private <E extends Throwable> boolean accumulate(Supplier<? extends ThrowingLongPredicate<? extends E>> workers) throws E {
+            LoopExecution<E,?> execution;
+            if(schedule != null)
+                execution = new ScheduledForExecution<>(this, workers);
+            else if(stealing)
+                execution = new StealingForExecution<>(this, workers);
+            else if(balanced)
+                execution = new BalancedForExecution<>(this, workers);
+            else execution = new ForExecution<>(this, workers);
             return execution.execute();
         }
 
@@ -680,224 +1150,1777 @@ public final class Parallel {
                 return false;
             });
         }
-    }
-
-
-    /**
-     * The parallel equivalent of a foreach loop:
-     * <pre>
-     * for(T t : source) {
-     *     // Do something
-     * }</pre>
-     * Additionally to source to loop over, this also allows to set some multithreading properties
-     * and the option to break out of the loop early when a specific condition is met.
-     *
-     * <p>The order in which the source is traversed is up to implementation, each iteration may be
-     * performed on an arbitrary thread at an arbitrary time during the loop. The option {@link #threads(int)}
-     * may give slight control over this, but the exact implementation is not specified.</p>
-     *
-     * <p>If the loop body throws any kind of exception (checked or unchecked), the loop will terminate
-     * early and the exception will be rethrown on the calling thread.</p>
-     *
-     * <p>Instances of this class can safely be reused, but this does require the source to be reusable.
-     * Particularly this is not the case if the source was an {@link Iterator} or a {@link Stream}. Note
-     * also that changing parameters of an instance which is currently executing a loop may or may not affect
-     * that loop. Neither case will cause an error, but may cause unintended behavior.</p>
-     */
-    public static class Foreach<T> extends Loop {
-
-        private Source<? extends T> source;
-        private int numThreads = -1;
 
         /**
-         * Sets the source to iterate over to the given iterator, which corresponds to the sequential loop
+         * Executes this for loop and reduces the values computed by the loop body into a single
+         * result. This is semantically equivalent to the sequential loop
          * <pre>
-         * while(source.hasNext()) {
-         *     // Do something with source.next()
-         * }</pre>
-         * Note that iterators are naturally not reusable, this the foreach loop also cannot be reused without
-         * changing the source.
+         * R result = identity;
+         * for(long i = start; i < stop; i += increment)
+         *     result = accumulator.apply(result, i);
+         * return result;</pre>
+         * Every worker thread accumulates into its own partial result, starting with the identity,
+         * and the partial results are combined using the combiner after the loop has finished. The
+         * order in which iterations are accumulated and partial results are combined is not specified.
          *
-         * @param source The iterator to loop over
-         * @return This foreach loop
+         * @param identity The identity value of the reduction, which must be neutral with respect
+         *                 to the combiner
+         * @param accumulator Function that accumulates the given iteration into the given partial result
+         * @param combiner Associative and commutative function to combine two partial results
+         * @return The reduced result, or the identity if no iterations were performed
+         * @throws E If thrown by the accumulator
          */
-        public <U extends T> Foreach<T> source(Iterator<U> source) {
-            Arguments.checkNull(source, "source");
-            this.source = new Source<U>() {
-                @Override
-                public Stream<U> stream() {
-                    return Utils.stream(source);
-                }
-
-                @NotNull
-                @Override
-                public Iterator<U> iterator() {
-                    return source;
-                }
-            };
-            return this;
+        public <R, E extends Throwable> R reduceL(R identity, ThrowingObjLongFunction<? super R, ? extends R, ? extends E> accumulator, BinaryOperator<R> combiner) throws E {
+            Arguments.checkNull(accumulator, "accumulator");
+            Arguments.checkNull(combiner, "combiner");
+            List<Wrapper<R>> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                Wrapper<R> partial = register(partials, new Wrapper<>(identity));
+                return i -> {
+                    partial.value = accumulator.apply(partial.value, i);
+                    return false;
+                };
+            });
+            R result = identity;
+            for(Wrapper<R> partial : partials)
+                result = combiner.apply(result, partial.value);
+            return result;
         }
 
         /**
-         * Sets the source to iterate over to the given iterable, which corresponds to the sequential loop
+         * Executes this for loop and reduces the values computed by the loop body into a single
+         * result. This is semantically equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     // Do something
-         * }</pre>
+         * R result = identity;
+         * for(long i = start; i < stop; i += increment)
+         *     result = accumulator.apply(result, (int) i);
+         * return result;</pre>
+         * Every worker thread accumulates into its own partial result, starting with the identity,
+         * and the partial results are combined using the combiner after the loop has finished. The
+         * order in which iterations are accumulated and partial results are combined is not specified.
          *
-         * @param source The iterable to loop over
-         * @return This foreach loop
+         * @param identity The identity value of the reduction, which must be neutral with respect
+         *                 to the combiner
+         * @param accumulator Function that accumulates the given iteration into the given partial result
+         * @param combiner Associative and commutative function to combine two partial results
+         * @return The reduced result, or the identity if no iterations were performed
+         * @throws E If thrown by the accumulator
          */
-        public <U extends T> Foreach<T> source(Iterable<U> source) {
-            Arguments.checkNull(source, "source");
-            this.source = new Source<U>() {
-                @Override
-                public Stream<U> stream() {
-                    return StreamSupport.stream(source.spliterator(), true);
-                }
-                @NotNull
-                @Override
-                public Iterator<U> iterator() {
-                    return source.iterator();
-                }
-            };
-            return this;
+        public <R, E extends Throwable> R reduce(R identity, ThrowingObjIntFunction<? super R, ? extends R, ? extends E> accumulator, BinaryOperator<R> combiner) throws E {
+            Arguments.checkNull(accumulator, "accumulator");
+            return reduceL(identity, (r, i) -> accumulator.apply(r, (int) i), combiner);
         }
 
         /**
-         * Sets the source to iterate over to the given iterable iterator, which corresponds to the sequential loop
+         * Executes this for loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     // Do something
-         * }</pre>
-         * Note that iterators are naturally not reusable, this the foreach loop also cannot be reused without
-         * changing the source.
+         * long sum = 0;
+         * for(long i = start; i < stop; i += increment)
+         *     sum += body.applyAsLong(i);
+         * return sum;</pre>
          *
-         * @param source The iterable iterator to loop over
-         * @return This foreach loop
+         * @param body The loop body that computes the summand for an iteration
+         * @return The sum of all values computed, <code>0</code> if no iterations were performed
+         * @throws E If thrown by the loop body
          */
-        public <U extends T> Foreach<T> source(IterableIterator<U> source) {
-            return source((Iterable<U>) source);
+        public <E extends Throwable> long sumLongL(ThrowingLongToLongFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            List<LongWrapper> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                LongWrapper partial = register(partials, new LongWrapper());
+                return i -> {
+                    partial.value += body.applyAsLong(i);
+                    return false;
+                };
+            });
+            long sum = 0;
+            for(LongWrapper partial : partials)
+                sum += partial.value;
+            return sum;
         }
 
         /**
-         * Sets the source to iterate over to the given array, which corresponds to the sequential loop
+         * Executes this for loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     // Do something
-         * }</pre>
+         * long sum = 0;
+         * for(long i = start; i < stop; i += increment)
+         *     sum += body.applyAsLong((int) i);
+         * return sum;</pre>
          *
-         * @param source The array whose elements to loop over
+         * @param body The loop body that computes the summand for an iteration
+         * @return The sum of all values computed, <code>0</code> if no iterations were performed
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> long sumLong(ThrowingIntToLongFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return sumLongL(i -> body.applyAsLong((int) i));
+        }
+
+        /**
+         * Executes this for loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
+         * <pre>
+         * double sum = 0;
+         * for(long i = start; i < stop; i += increment)
+         *     sum += body.applyAsDouble(i);
+         * return sum;</pre>
+         * Note that because the summation order is not specified, the result may be subject to
+         * different rounding errors than the sequential loop.
+         *
+         * @param body The loop body that computes the summand for an iteration
+         * @return The sum of all values computed, <code>0</code> if no iterations were performed
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> double sumDoubleL(ThrowingLongToDoubleFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            List<DoubleWrapper> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                DoubleWrapper partial = register(partials, new DoubleWrapper());
+                return i -> {
+                    partial.value += body.applyAsDouble(i);
+                    return false;
+                };
+            });
+            double sum = 0;
+            for(DoubleWrapper partial : partials)
+                sum += partial.value;
+            return sum;
+        }
+
+        /**
+         * Executes this for loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
+         * <pre>
+         * double sum = 0;
+         * for(long i = start; i < stop; i += increment)
+         *     sum += body.applyAsDouble((int) i);
+         * return sum;</pre>
+         * Note that because the summation order is not specified, the result may be subject to
+         * different rounding errors than the sequential loop.
+         *
+         * @param body The loop body that computes the summand for an iteration
+         * @return The sum of all values computed, <code>0</code> if no iterations were performed
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> double sumDouble(ThrowingIntToDoubleFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return sumDoubleL(i -> body.applyAsDouble((int) i));
+        }
+
+        /**
+         * Executes this for loop and returns the smallest non-null value returned by the loop body,
+         * according to the given comparator.
+         *
+         * @param body The loop body that computes the value for an iteration, or <code>null</code>
+         *             to ignore the iteration
+         * @param comparator The comparator to compare the values with
+         * @return The smallest value returned by the loop body, or <code>null</code> if no iteration
+         *         returned a non-null value. If multiple values are minimal, an arbitrary one of them
+         *         may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <T, E extends Throwable> T minL(ThrowingLongFunction<? extends T, ? extends E> body, Comparator<? super T> comparator) throws E {
+            Arguments.checkNull(body, "body");
+            Arguments.checkNull(comparator, "comparator");
+            List<Wrapper<T>> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                Wrapper<T> partial = register(partials, new Wrapper<>());
+                return i -> {
+                    T t = body.apply(i);
+                    if(t != null && (partial.value == null || comparator.compare(t, partial.value) < 0))
+                        partial.value = t;
+                    return false;
+                };
+            });
+            return Parallel.min(partials, comparator);
+        }
+
+        /**
+         * Executes this for loop and returns the smallest non-null value returned by the loop body,
+         * according to the given comparator. The loop body receives the iteration number cast to
+         * <code>int</code>.
+         *
+         * @param body The loop body that computes the value for an iteration, or <code>null</code>
+         *             to ignore the iteration
+         * @param comparator The comparator to compare the values with
+         * @return The smallest value returned by the loop body, or <code>null</code> if no iteration
+         *         returned a non-null value. If multiple values are minimal, an arbitrary one of them
+         *         may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <T, E extends Throwable> T min(ThrowingIntFunction<? extends T, ? extends E> body, Comparator<? super T> comparator) throws E {
+            Arguments.checkNull(body, "body");
+            return minL(i -> body.apply((int) i), comparator);
+        }
+
+        /**
+         * Executes this for loop and returns the largest non-null value returned by the loop body,
+         * according to the given comparator.
+         *
+         * @param body The loop body that computes the value for an iteration, or <code>null</code>
+         *             to ignore the iteration
+         * @param comparator The comparator to compare the values with
+         * @return The largest value returned by the loop body, or <code>null</code> if no iteration
+         *         returned a non-null value. If multiple values are maximal, an arbitrary one of them
+         *         may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <T, E extends Throwable> T maxL(ThrowingLongFunction<? extends T, ? extends E> body, Comparator<? super T> comparator) throws E {
+            Arguments.checkNull(comparator, "comparator");
+            return minL(body, comparator.reversed());
+        }
+
+        /**
+         * Executes this for loop and returns the largest non-null value returned by the loop body,
+         * according to the given comparator. The loop body receives the iteration number cast to
+         * <code>int</code>.
+         *
+         * @param body The loop body that computes the value for an iteration, or <code>null</code>
+         *             to ignore the iteration
+         * @param comparator The comparator to compare the values with
+         * @return The largest value returned by the loop body, or <code>null</code> if no iteration
+         *         returned a non-null value. If multiple values are maximal, an arbitrary one of them
+         *         may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <T, E extends Throwable> T max(ThrowingIntFunction<? extends T, ? extends E> body, Comparator<? super T> comparator) throws E {
+            Arguments.checkNull(comparator, "comparator");
+            return min(body, comparator.reversed());
+        }
+
+        /**
+         * Executes this for loop and performs a mutable reduction into result containers. This is
+         * semantically equivalent to the sequential loop
+         * <pre>
+         * R result = supplier.get();
+         * for(long i = start; i < stop; i += increment)
+         *     accumulator.accept(result, i);
+         * return result;</pre>
+         * Every worker thread accumulates into its own container created by the supplier, and the
+         * containers are merged using the combiner after the loop has finished.
+         *
+         * @param supplier Creates a new, empty result container
+         * @param accumulator Adds the given iteration to the given result container
+         * @param combiner Merges all elements of the second container into the first container
+         * @return The result container
+         * @throws E If thrown by the accumulator
+         */
+        public <R, E extends Throwable> R collectL(Supplier<? extends R> supplier, ThrowingObjLongConsumer<? super R, ? extends E> accumulator, BiConsumer<? super R, ? super R> combiner) throws E {
+            Arguments.checkNull(supplier, "supplier");
+            Arguments.checkNull(accumulator, "accumulator");
+            Arguments.checkNull(combiner, "combiner");
+            List<R> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                R partial = register(partials, supplier.get());
+                return i -> {
+                    accumulator.accept(partial, i);
+                    return false;
+                };
+            });
+            return combine(partials, supplier, combiner);
+        }
+
+        /**
+         * Executes this for loop and performs a mutable reduction into result containers. This is
+         * semantically equivalent to the sequential loop
+         * <pre>
+         * R result = supplier.get();
+         * for(long i = start; i < stop; i += increment)
+         *     accumulator.accept(result, (int) i);
+         * return result;</pre>
+         * Every worker thread accumulates into its own container created by the supplier, and the
+         * containers are merged using the combiner after the loop has finished.
+         *
+         * @param supplier Creates a new, empty result container
+         * @param accumulator Adds the given iteration to the given result container
+         * @param combiner Merges all elements of the second container into the first container
+         * @return The result container
+         * @throws E If thrown by the accumulator
+         */
+        public <R, E extends Throwable> R collect(Supplier<? extends R> supplier, ThrowingObjIntConsumer<? super R, ? extends E> accumulator, BiConsumer<? super R, ? super R> combiner) throws E {
+            Arguments.checkNull(accumulator, "accumulator");
+            return collectL(supplier, (r, i) -> accumulator.accept(r, (int) i), combiner);
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. This
+         * is equivalent to
+         * <pre>
+         * List&lt;R&gt; results = new ArrayList&lt;&gt;();
+         * for(long i = start; i < stop; i += increment)
+         *     results.add(body.apply(i));
+         * return results;</pre>
+         * Every iteration writes its result directly into its own slot of the result, thus no
+         * synchronization is needed per iteration.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order, including <code>null</code> results
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         */
+        @SuppressWarnings("unchecked")
+        public <R, E extends Throwable> ListStream<R> mapL(ThrowingLongFunction<? extends R, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            long start = this.start, increment = this.increment;
+            Object[] results = new Object[resultCount()];
+            anyL(i -> {
+                results[(int) ((i - start) / increment)] = body.apply(i);
+                return false;
+            });
+            return ListStream.of(Arrays.asList((R[]) results));
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * loop body receives the iteration number cast to <code>int</code>.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order, including <code>null</code> results
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <R, E extends Throwable> ListStream<R> map(ThrowingIntFunction<? extends R, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return mapL(i -> body.apply((int) i));
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> int[] mapToIntL(ThrowingLongToIntFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            long start = this.start, increment = this.increment;
+            int[] results = new int[resultCount()];
+            anyL(i -> {
+                results[(int) ((i - start) / increment)] = body.applyAsInt(i);
+                return false;
+            });
+            return results;
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing. The loop body receives
+         * the iteration number cast to <code>int</code>.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> int[] mapToInt(ThrowingIntToIntFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return mapToIntL(i -> body.applyAsInt((int) i));
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> long[] mapToLongL(ThrowingLongToLongFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            long start = this.start, increment = this.increment;
+            long[] results = new long[resultCount()];
+            anyL(i -> {
+                results[(int) ((i - start) / increment)] = body.applyAsLong(i);
+                return false;
+            });
+            return results;
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing. The loop body receives
+         * the iteration number cast to <code>int</code>.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> long[] mapToLong(ThrowingIntToLongFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return mapToLongL(i -> body.applyAsLong((int) i));
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> double[] mapToDoubleL(ThrowingLongToDoubleFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            long start = this.start, increment = this.increment;
+            double[] results = new double[resultCount()];
+            anyL(i -> {
+                results[(int) ((i - start) / increment)] = body.applyAsDouble(i);
+                return false;
+            });
+            return results;
+        }
+
+        /**
+         * Executes this for loop and returns the results of all iterations, in iteration order. The
+         * results are written directly into the returned array without boxing. The loop body receives
+         * the iteration number cast to <code>int</code>.
+         *
+         * @param body The loop body that computes the result of an iteration
+         * @return The results of all iterations, in iteration order
+         * @throws E If thrown by the loop body
+         * @throws IllegalStateException If this loop has too many iterations to store all results
+         * @see #mapL(ThrowingLongFunction)
+         */
+        public <E extends Throwable> double[] mapToDouble(ThrowingIntToDoubleFunction<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return mapToDoubleL(i -> body.applyAsDouble((int) i));
+        }
+
+        /**
+         * Returns the number of iterations this loop performs.
+         */
+        long count() {
+            return stop > start ? (stop - start - 1) / increment + 1 : 0;
+        }
+
+        /**
+         * Returns the number of iterations this loop performs, ensuring that the results of
+         * all iterations can be stored in an array.
+         */
+        private int resultCount() {
+            long count = count();
+            if(count > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many iterations to store all results: "+count);
+            return (int) count;
+        }
+    }
+
+
+    /**
+     * A policy by which the iterations of a {@link For} loop are split into chunks and distributed
+     * across the threads, modeled after the <code>schedule</code> clause of OpenMP:
+     * <ul>
+     *     <li>{@link #staticChunks(long)}: The iterations are split into chunks of a fixed size which
+     *     are assigned to the threads round-robin before the loop starts. There is no synchronization
+     *     between the threads at all, but uneven workloads are not balanced.</li>
+     *     <li>{@link #dynamic(long)}: The iterations are split into chunks of a fixed size, and each
+     *     thread takes the next chunk once it has finished its previous one.</li>
+     *     <li>{@link #guided(long)}: Like dynamic scheduling, but the size of each chunk is proportional
+     *     to the number of iterations remaining divided by the number of threads, such that the chunks
+     *     shrink towards the end of the loop. This requires less synchronization than dynamic scheduling
+     *     with small chunks, while still balancing uneven workloads.</li>
+     * </ul>
+     */
+    public static final class Schedule {
+
+        private final Kind kind;
+        private final long chunkSize;
+
+        private Schedule(Kind kind, long chunkSize) {
+            this.kind = kind;
+            this.chunkSize = Arguments.checkRange(chunkSize, 1L, null);
+        }
+
+        @Override
+        public String toString() {
+            return kind.name().toLowerCase() + "(" + chunkSize + ")";
+        }
+
+        /**
+         * Returns a static schedule, which splits the iterations into chunks of the given size and
+         * assigns them to the threads round-robin.
+         *
+         * @param chunkSize The number of iterations per chunk
+         * @return A static schedule with the given chunk size
+         */
+        public static Schedule staticChunks(@Range(from = 1) long chunkSize) {
+            return new Schedule(Kind.STATIC, chunkSize);
+        }
+
+        /**
+         * Returns a dynamic schedule, which splits the iterations into chunks of the given size,
+         * where each thread takes the next chunk once it has finished its previous chunk.
+         *
+         * @param chunkSize The number of iterations per chunk
+         * @return A dynamic schedule with the given chunk size
+         */
+        public static Schedule dynamic(@Range(from = 1) long chunkSize) {
+            return new Schedule(Kind.DYNAMIC, chunkSize);
+        }
+
+        /**
+         * Returns a guided schedule, where each thread takes the next chunk once it has finished its
+         * previous chunk, and the chunk sizes are proportional to the number of remaining iterations
+         * divided by the number of threads, but no smaller than the given minimum.
+         *
+         * @param minChunkSize The minimum number of iterations per chunk, except for the last chunk
+         * @return A guided schedule with the given minimum chunk size
+         */
+        public static Schedule guided(@Range(from = 1) long minChunkSize) {
+            return new Schedule(Kind.GUIDED, minChunkSize);
+        }
+
+        /**
+         * Returns a guided schedule with a minimum chunk size of 1.
+         *
+         * @return A guided schedule
+         * @see #guided(long)
+         */
+        public static Schedule guided() {
+            return guided(1);
+        }
+
+        private enum Kind {
+            STATIC,
+            DYNAMIC,
+            GUIDED
+        }
+    }
+
+
+    /**
+     * Collects statistics about the executions of parallel loops, which can be used to figure out
+     * whether a slow loop is slow because of its body, because of an uneven workload, or because
+     * of scheduling overhead. Set it on a loop using {@link For#stats(LoopStats)} or
+     * {@link Foreach#stats(LoopStats)}; every time the loop is executed, a {@link LoopReport} will be
+     * recorded. The same instance may be shared between multiple loops, also concurrently.
+     *
+     * <p>The workers count into their own counters, which are only merged once the loop has finished,
+     * such that collecting statistics only adds a small overhead to every iteration. If no statistics
+     * object is set, no statistics are collected at all.</p>
+     */
+    public static final class LoopStats {
+
+        private LoopReport last = null;
+        private long loops = 0;
+        private long wallTimeNanos = 0;
+        private long iterations = 0;
+
+        @Override
+        public synchronized String toString() {
+            return "LoopStats{loops: " + loops + ", iterations: " + iterations + ", wall time: " + wallTimeNanos / 1000000.0 + "ms, last: " + last + "}";
+        }
+
+        synchronized void record(LoopReport report) {
+            last = report;
+            loops++;
+            wallTimeNanos += report.wallTimeNanos();
+            iterations += report.iterations();
+        }
+
+        /**
+         * Returns the report of the loop execution recorded most recently.
+         *
+         * @return The last report, or <code>null</code> if no loop execution has been recorded yet
+         */
+        public synchronized LoopReport last() {
+            return last;
+        }
+
+        /**
+         * Returns the number of loop executions recorded.
+         *
+         * @return The number of recorded loop executions
+         */
+        public synchronized long loops() {
+            return loops;
+        }
+
+        /**
+         * Returns the summed wall time of all recorded loop executions, in nanoseconds.
+         *
+         * @return The total wall time of all loops
+         */
+        public synchronized long wallTimeNanos() {
+            return wallTimeNanos;
+        }
+
+        /**
+         * Returns the total number of iterations performed by all recorded loop executions.
+         *
+         * @return The total number of iterations
+         */
+        public synchronized long iterations() {
+            return iterations;
+        }
+
+        /**
+         * Clears all recorded statistics.
+         */
+        public synchronized void reset() {
+            last = null;
+            loops = wallTimeNanos = iterations = 0;
+        }
+    }
+
+    /**
+     * The statistics of a single execution of a parallel loop, recorded into a {@link LoopStats}.
+     * All times are given in nanoseconds. A chunk is a unit of work handed out to a worker at once,
+     * for example a single index of a {@link For} loop with the default distribution, or a batch of
+     * elements taken from the shared iterator of a {@link Foreach} loop. The lock wait time is the
+     * time workers spent acquiring the next chunk, i.e. waiting on the index lock, on the iterator lock,
+     * or claiming and stealing work.
+     */
+    public static final class LoopReport {
+
+        private final String loop;
+        private final long wallTimeNanos;
+        private final long[] iterations;
+        private final long[] busyNanos;
+        private final long[] chunks;
+        private final long[] lockWaitNanos;
+
+        LoopReport(String loop, long wallTimeNanos, WorkerStats[] workers) {
+            this.loop = loop;
+            this.wallTimeNanos = wallTimeNanos;
+            iterations = new long[workers.length];
+            busyNanos = new long[workers.length];
+            chunks = new long[workers.length];
+            lockWaitNanos = new long[workers.length];
+            for(int i=0; i<workers.length; i++) {
+                iterations[i] = workers[i].iterations;
+                busyNanos[i] = workers[i].busyNanos;
+                chunks[i] = workers[i].chunks;
+                lockWaitNanos[i] = workers[i].lockWaitNanos;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return loop + "{workers: " + workers() + ", iterations: " + iterations() + ", chunks: " + chunks()
+                    + ", wall time: " + wallTimeNanos / 1000000.0 + "ms, busy time: " + busyTimeNanos() / 1000000.0
+                    + "ms, lock wait: " + lockWaitNanos() / 1000000.0 + "ms, imbalance: " + imbalance()
+                    + ", iterations per worker: " + Arrays.toString(iterations) + "}";
+        }
+
+        /**
+         * Returns the time from the start of the loop until it completed.
+         *
+         * @return The wall time of the loop
+         */
+        public long wallTimeNanos() {
+            return wallTimeNanos;
+        }
+
+        /**
+         * Returns the number of workers the loop was executed with. If the loop was not executed
+         * because it had no iterations, this is 0.
+         *
+         * @return The number of workers
+         */
+        public int workers() {
+            return iterations.length;
+        }
+
+        /**
+         * Returns the number of iterations performed by the given worker.
+         *
+         * @param worker The index of the worker
+         * @return The number of iterations of that worker
+         */
+        public long iterations(int worker) {
+            return iterations[worker];
+        }
+
+        /**
+         * Returns the number of iterations performed by all workers together.
+         *
+         * @return The total number of iterations
+         */
+        public long iterations() {
+            return sum(iterations);
+        }
+
+        /**
+         * Returns the time the given worker was running, including the time waiting for work.
+         *
+         * @param worker The index of the worker
+         * @return The busy time of that worker
+         */
+        public long busyTimeNanos(int worker) {
+            return busyNanos[worker];
+        }
+
+        /**
+         * Returns the summed time all workers were running.
+         *
+         * @return The total busy time
+         */
+        public long busyTimeNanos() {
+            return sum(busyNanos);
+        }
+
+        /**
+         * Returns the number of chunks of work the given worker took.
+         *
+         * @param worker The index of the worker
+         * @return The number of chunks of that worker
+         */
+        public long chunks(int worker) {
+            return chunks[worker];
+        }
+
+        /**
+         * Returns the number of chunks of work handed out to all workers.
+         *
+         * @return The total number of chunks
+         */
+        public long chunks() {
+            return sum(chunks);
+        }
+
+        /**
+         * Returns the time the given worker spent acquiring work.
+         *
+         * @param worker The index of the worker
+         * @return The lock wait time of that worker
+         */
+        public long lockWaitNanos(int worker) {
+            return lockWaitNanos[worker];
+        }
+
+        /**
+         * Returns the summed time all workers spent acquiring work.
+         *
+         * @return The total lock wait time
+         */
+        public long lockWaitNanos() {
+            return sum(lockWaitNanos);
+        }
+
+        /**
+         * Returns the ratio between the longest busy time of any worker and the average busy
+         * time of all workers. A value of 1 means that all workers were busy for the same time,
+         * larger values mean that some workers were idle while others still had work left.
+         *
+         * @return The load imbalance of the loop, at least 1
+         */
+        public double imbalance() {
+            long max = 0;
+            for(long busy : busyNanos)
+                max = Math.max(max, busy);
+            long total = busyTimeNanos();
+            return total == 0 ? 1 : (double) max * busyNanos.length / total;
+        }
+
+        private static long sum(long[] values) {
+            long sum = 0;
+            for(long value : values)
+                sum += value;
+            return sum;
+        }
+    }
+
+    /**
+     * The parallel equivalent of a foreach loop:
+     * <pre>
+     * for(T t : source) {
+     *     // Do something
+     * }</pre>
+     * Additionally to source to loop over, this also allows to set some multithreading properties
+     * and the option to break out of the loop early when a specific condition is met.
+     *
+     * <p>The order in which the source is traversed is up to implementation, each iteration may be
+     * performed on an arbitrary thread at an arbitrary time during the loop. The options {@link #threads(int)},
+     * {@link #balanced(boolean)}, {@link #stealing(boolean)} and {@link #batch(int)} may give slight control
+     * over this, but the exact implementation is not specified.</p>
+     *
+     * <p>Arrays and {@link RandomAccess} lists are split by index ranges, just like {@link For} loops,
+     * such that the workers do not need to synchronize on a shared iterator. All other sources are
+     * traversed using a single iterator which is shared between all workers.</p>
+     *
+     * <p>If the loop body throws any kind of exception (checked or unchecked), the loop will terminate
+     * early and the exception will be rethrown on the calling thread.</p>
+     *
+     * <p>Results can be aggregated using the reduction methods like {@link #reduce(Object, ThrowingBiFunction, BinaryOperator)},
+     * {@link #sumLong(ThrowingToLongFunction)} or {@link #collect(Supplier, ThrowingBiConsumer, BiConsumer)}.
+     * Every worker thread accumulates into its own private state, and the partial results are only
+     * combined once the loop has finished, such that no synchronization is needed per element.
+     * The results for all elements can also be collected in source order using {@link #map(ThrowingFunction)}
+     * or one of its primitive variants.</p>
+     *
+     * <p>Instances of this class can safely be reused, but this does require the source to be reusable.
+     * Particularly this is not the case if the source was an {@link Iterator} or a {@link Stream}. Note
+     * also that changing parameters of an instance which is currently executing a loop may or may not affect
+     * that loop. Neither case will cause an error, but may cause unintended behavior.</p>
+     */
+    public static class Foreach<T> extends Loop {
+
+        private Source<? extends T> source;
+        private int numThreads = -1;
+        private Executor executor = null;
+        private boolean balanced = false;
+        private boolean stealing = false;
+        private int batchSize = 1;
+        private LoopStats stats = null;
+
+        /**
+         * Sets the source to iterate over to the given iterator, which corresponds to the sequential loop
+         * <pre>
+         * while(source.hasNext()) {
+         *     // Do something with source.next()
+         * }</pre>
+         * Note that iterators are naturally not reusable, this the foreach loop also cannot be reused without
+         * changing the source.
+         *
+         * @param source The iterator to loop over
+         * @return This foreach loop
+         */
+        public <U extends T> Foreach<T> source(Iterator<U> source) {
+            Arguments.checkNull(source, "source");
+            this.source = new Source<U>() {
+                @Override
+                public Stream<U> stream() {
+                    return Utils.stream(source);
+                }
+
+                @NotNull
+                @Override
+                public Iterator<U> iterator() {
+                    return source;
+                }
+            };
+            return this;
+        }
+
+        /**
+         * Sets the source to iterate over to the given iterable, which corresponds to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     // Do something
+         * }</pre>
+         *
+         * If the iterable is a {@link RandomAccess} list, it will be split by index ranges rather than
+         * being traversed using a shared iterator.
+         *
+         * @param source The iterable to loop over
+         * @return This foreach loop
+         */
+        public <U extends T> Foreach<T> source(Iterable<U> source) {
+            Arguments.checkNull(source, "source");
+            if(source instanceof List && source instanceof RandomAccess) {
+                this.source = new ListSource<>((List<U>) source);
+                return this;
+            }
+            this.source = new Source<U>() {
+                @Override
+                public Stream<U> stream() {
+                    return StreamSupport.stream(source.spliterator(), true);
+                }
+                @NotNull
+                @Override
+                public Iterator<U> iterator() {
+                    return source.iterator();
+                }
+            };
+            return this;
+        }
+
+        /**
+         * Sets the source to iterate over to the given iterable iterator, which corresponds to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     // Do something
+         * }</pre>
+         * Note that iterators are naturally not reusable, this the foreach loop also cannot be reused without
+         * changing the source.
+         *
+         * @param source The iterable iterator to loop over
+         * @return This foreach loop
+         */
+        public <U extends T> Foreach<T> source(IterableIterator<U> source) {
+            return source((Iterable<U>) source);
+        }
+
+        /**
+         * Sets the source to iterate over to the given array, which corresponds to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     // Do something
+         * }</pre>
+         *
+         * @param source The array whose elements to loop over
+         * @return This foreach loop
+         */
+        public Foreach<T> source(T[] source) {
+            Arguments.checkNull(source, "source");
+            this.source = new ArraySource<>(source);
+            return this;
+        }
+
+        /**
+         * Sets the source to iterate over to the given stream, which semantically corresponds to
+         * <pre>
+         * source.parallel().forEach(doSomething)</pre>
+         * This class may be used to further control the execution parallelism, e.g. with
+         * {@link #threads(int)}.
+         *
+         * @param source The stream whose elements to loop over
+         * @return This foreach loop
+         */
+        public <U extends T> Foreach<T> source(Stream<U> source) {
+            Arguments.checkNull(source, "source");
+            this.source = new Source<U>() {
+                @Override
+                public Stream<U> stream() {
+                    return source;
+                }
+                @NotNull
+                @Override
+                public Iterator<U> iterator() {
+                    return source.iterator();
+                }
+            };
+            return this;
+        }
+
+        @Override
+        int threads() {
+            return numThreads;
+        }
+
+        /**
+         * Sets the number of threads to use to parallelize this for loop:
+         * <ul>
+         *     <li>A positive value greater than <code>1</code> causes the loop execution to use
+         *     <i>at most</i> that many threads. The library may however choose to use less threads,
+         *     particularly there are less iterations in the loop than there are threads, or if the
+         *     loop already completed before all threads were started.</li>
+         *     <li>A value of <code>1</code> will result in sequential execution, just like a regular
+         *     foreach loop</li>
+         *     <li>Values less or equal to <code>0</code> result in the library choosing the thread
+         *     count automatically, usually 1 per CPU core. This is the default behavior.</li>
+         * </ul>
+         *
+         * @param count The number of threads to use for execution, or <=0 to choose automatically
+         * @return This foreach loop
+         */
+        public Foreach<T> threads(int count) {
+            this.numThreads = count;
+            return this;
+        }
+
+        @Override
+        Executor executor() {
+            return executor;
+        }
+
+        /**
+         * Sets the executor on which the worker threads of this foreach loop should run. The calling
+         * thread always participates in the loop execution as one of the workers, and also runs
+         * workers itself which have not been started by the executor by the time it finished its
+         * own work. Thus, the loop will also complete if the executor is busy or rejects tasks.
+         *
+         * <p>If set to <code>null</code> (the default), the common {@link ForkJoinPool} will be
+         * used, or, if more threads were requested than it provides, a library-managed pool of
+         * worker threads which are reused across loops and terminate after being idle for a
+         * while.</p>
+         *
+         * @param executor The executor to run the workers on, or <code>null</code> to use the default
+         * @return This foreach loop
+         */
+        public Foreach<T> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Controls whether the elements should be split evenly across all threads. This option only
+         * has an effect if the source is an array or a {@link RandomAccess} list, and behaves
+         * identical to {@link For#balanced(boolean)}. The default is <code>false</code>. Enabling
+         * this option disables {@link #stealing(boolean)}.
+         *
+         * @param balanced If <code>true</code>, every thread will process the same number of elements,
+         *                 if <code>false</code> the elements will be split dynamically based on which
+         *                 thread has capacity.
          * @return This foreach loop
          */
-        public Foreach<T> source(T[] source) {
-            Arguments.checkNull(source, "source");
-            this.source = new ArraySource<>(source);
-            return this;
+        public Foreach<T> balanced(boolean balanced) {
+            this.balanced = balanced;
+            if(balanced)
+                stealing = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>balanced(true)</code>.
+         *
+         * @return This foreach loop
+         * @see #balanced(boolean)
+         */
+        public Foreach<T> balanced() {
+            return balanced(true);
+        }
+
+        /**
+         * Controls whether the elements should be distributed using work stealing. This option only
+         * has an effect if the source is an array or a {@link RandomAccess} list, and behaves
+         * identical to {@link For#stealing(boolean)}. The default is <code>false</code>. Enabling
+         * this option disables {@link #balanced(boolean)}.
+         *
+         * @param stealing Whether to distribute the elements using work stealing
+         * @return This foreach loop
+         */
+        public Foreach<T> stealing(boolean stealing) {
+            this.stealing = stealing;
+            if(stealing)
+                balanced = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>stealing(true)</code>.
+         *
+         * @return This foreach loop
+         * @see #stealing(boolean)
+         */
+        public Foreach<T> stealing() {
+            return stealing(true);
+        }
+
+        /**
+         * Sets the number of elements a thread takes from the source at once, if the source cannot
+         * be split by index (i.e. if it is neither an array nor a {@link RandomAccess} list). Every
+         * access to the shared iterator needs to be synchronized, thus taking multiple elements at
+         * once reduces the synchronization overhead by that factor. On the other hand, larger batches
+         * may cause some threads to still be busy with their batch while others have run out of work,
+         * and the loop may process more elements than needed before stopping early. The default is
+         * <code>1</code>.
+         *
+         * @param size The number of elements to take from the shared iterator at once, at least 1
+         * @return This foreach loop
+         */
+        public Foreach<T> batch(@Range(from = 1) int size) {
+            this.batchSize = Arguments.checkRange(size, 1, null);
+            return this;
+        }
+
+        @Override
+        LoopStats stats() {
+            return stats;
+        }
+
+        /**
+         * Sets the statistics object into which a report will be recorded every time this foreach loop
+         * is executed, see {@link LoopStats}. Collecting statistics disables some optimizations and
+         * adds a small overhead to every element. By default, no statistics are collected.
+         *
+         * @param stats The statistics to record the executions into, or <code>null</code> to disable
+         *              collecting statistics
+         * @return This foreach loop
+         */
+        public Foreach<T> stats(LoopStats stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        /**
+         * Returns a for loop over the indices of the given indexed source, with the same settings
+         * as this foreach loop.
+         */
+        private For indices(IndexedSource<? extends T> source) {
+            return Parallel.For(source.size())
+                    .threads(numThreads)
+                    .executor(executor)
+                    .balanced(balanced)
+                    .stealing(stealing)
+                    .stats(stats);
+        }
+
+        /**
+         * Executes this foreach loop, stopping early once any element has fulfilled the condition, that
+         * is, the predicate returned <code>true</code>. This is equivalent to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     if(body.test(t))
+         *         return true;
+         * }
+         * return false;</pre>
+         *
+         * @param body The loop body that tests whether a given element fulfills the exit condition
+         * @return Whether any loop iteration returned <code>true</code>. If no iterations were performed,
+         *         the result is <code>false</code>.
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> boolean any(ThrowingPredicate<? super T, ? extends E> body) throws E {
+            if(source instanceof IndexedSource) {
+                IndexedSource<? extends T> indexed = (IndexedSource<? extends T>) source;
+                return indices(indexed).any(i -> body.test(indexed.get(i)));
+            }
+            return new ForeachExecution<>(this, body).execute();
+        }
+
+        /**
+         * Executes this foreach loop, stopping early if any element has not fulfilled the condition, that
+         * is, the predicate returned <code>false</code>. This is equivalent to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     if(!body.test(t))
+         *         return false;
+         * }
+         * return true;</pre>
+         *
+         * @param body The loop body that tests whether a given element fulfills the continue condition
+         * @return <code>false</code>, if any iteration returned <code>false</code>, <code>true</code>
+         *         otherwise (including if the loop body was never executed)
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> boolean all(ThrowingPredicate<? super T, ? extends E> body) throws E {
+            return !any(e -> !body.test(e));
+        }
+
+        /**
+         * Executes this foreach loop, stopping early once any iteration returned a non-null value. This is
+         * equivalent to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     R r = body.apply(t);
+         *     if(r != null)
+         *         return r;
+         * }
+         * return null;</pre>
+         *
+         * @param body The loop body that computes the loop result value, or <code>null</code>
+         * @return If any loop iteration returned a non-null value, that value is returned, otherwise
+         *         <code>null</code> (including the case where the body is never executed). If multiple
+         *         iterations returned a non-null value, an arbitrary one of them may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <R, E extends Throwable> R find(ThrowingFunction<? super T, ? extends R, ? extends E> body) throws E {
+            Wrapper<R> result = new Wrapper<>(null);
+            any(t -> {
+                R res = body.apply(t);
+                if(res != null)
+                    result.value = res;
+                return result.value != null;
+            });
+            return null;
+        }
+
+        /**
+         * Executes this foreach loop, stopping early once any iteration returned a non-null value. If no
+         * iteration returned a non-null value, the value returned by the given supplier is returned
+         * instead. This is equivalent to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     R r = body.apply(t);
+         *     if(r != null)
+         *         return r;
+         * }
+         * return elseGet.get();</pre>
+         *
+         * @param body The loop body that computes the loop result value, or <code>null</code>
+         * @param elseGet The value to return if all iterations of the loop returned <code>null</code>.
+         *                The supplier is only evaluated if all iterations returned <code>null</code>,
+         *                and never more than once.
+         * @return If any loop iteration returned a non-null value, that value is returned, otherwise
+         *         the value returned by the given supplier (including the case where the body is
+         *         never executed). If multiple iterations returned a non-null value, an arbitrary one
+         *         of them may be returned.
+         * @throws E If thrown by the loop body or the supplier
+         */
+        public <R, E extends Throwable> R find(ThrowingFunction<? super T, ? extends R, ? extends E> body, ThrowingSupplier<? extends R, ? extends E> elseGet) throws E {
+            R result = find(body);
+            return result != null ? result : elseGet.get();
+        }
+
+        /**
+         * Executes this foreach loop. This is equivalent to the sequential loop
+         * <pre>
+         * for(T t : source) {
+         *     body.accept(t);
+         * }</pre>
+         *
+         * @param body The loop body to execute for every element
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> void run(ThrowingConsumer<? super T, ? extends E> body) throws E {
+            if(source instanceof IndexedSource) {
+                IndexedSource<? extends T> indexed = (IndexedSource<? extends T>) source;
+                indices(indexed).any(i -> {
+                    body.accept(indexed.get(i));
+                    return false;
+                });
+            }
+            else any(t -> {
+                body.accept(t);
+                return false;
+            });
+        }
+
+        /**
+         * Executes this foreach loop where every worker uses its own loop body, obtained once per
+         * worker from the given supplier.
+         */
+        private <E extends Throwable> void accumulate(Supplier<? extends ThrowingPredicate<? super T, ? extends E>> workers) throws E {
+            if(source instanceof IndexedSource) {
+                IndexedSource<? extends T> indexed = (IndexedSource<? extends T>) source;
+                indices(indexed).<E>accumulate(() -> {
+                    ThrowingPredicate<? super T, ? extends E> worker = workers.get();
+                    return i -> worker.test(indexed.get((int) i));
+                });
+            }
+            else new ForeachExecution<>(this, workers).execute();
+        }
+
+        /**
+         * Executes this foreach loop and reduces the elements into a single result. This is
+         * semantically equivalent to the sequential loop
+         * <pre>
+         * R result = identity;
+         * for(T t : source)
+         *     result = accumulator.apply(result, t);
+         * return result;</pre>
+         * Every worker thread accumulates into its own partial result, starting with the identity,
+         * and the partial results are combined using the combiner after the loop has finished. The
+         * order in which elements are accumulated and partial results are combined is not specified.
+         *
+         * @param identity The identity value of the reduction, which must be neutral with respect
+         *                 to the combiner
+         * @param accumulator Function that accumulates the given element into the given partial result
+         * @param combiner Associative and commutative function to combine two partial results
+         * @return The reduced result, or the identity if the source was empty
+         * @throws E If thrown by the accumulator
+         */
+        public <R, E extends Throwable> R reduce(R identity, ThrowingBiFunction<? super R, ? super T, ? extends R, ? extends E> accumulator, BinaryOperator<R> combiner) throws E {
+            Arguments.checkNull(accumulator, "accumulator");
+            Arguments.checkNull(combiner, "combiner");
+            List<Wrapper<R>> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                Wrapper<R> partial = register(partials, new Wrapper<>(identity));
+                return t -> {
+                    partial.value = accumulator.apply(partial.value, t);
+                    return false;
+                };
+            });
+            R result = identity;
+            for(Wrapper<R> partial : partials)
+                result = combiner.apply(result, partial.value);
+            return result;
+        }
+
+        /**
+         * Executes this foreach loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
+         * <pre>
+         * long sum = 0;
+         * for(T t : source)
+         *     sum += body.applyAsLong(t);
+         * return sum;</pre>
+         *
+         * @param body The loop body that computes the summand for an element
+         * @return The sum of all values computed, <code>0</code> if the source was empty
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> long sumLong(ThrowingToLongFunction<? super T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            List<LongWrapper> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                LongWrapper partial = register(partials, new LongWrapper());
+                return t -> {
+                    partial.value += body.applyAsLong(t);
+                    return false;
+                };
+            });
+            long sum = 0;
+            for(LongWrapper partial : partials)
+                sum += partial.value;
+            return sum;
+        }
+
+        /**
+         * Executes this foreach loop and returns the sum of all values returned by the loop body. This
+         * is equivalent to the sequential loop
+         * <pre>
+         * double sum = 0;
+         * for(T t : source)
+         *     sum += body.applyAsDouble(t);
+         * return sum;</pre>
+         * Note that because the summation order is not specified, the result may be subject to
+         * different rounding errors than the sequential loop.
+         *
+         * @param body The loop body that computes the summand for an element
+         * @return The sum of all values computed, <code>0</code> if the source was empty
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> double sumDouble(ThrowingToDoubleFunction<? super T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            List<DoubleWrapper> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                DoubleWrapper partial = register(partials, new DoubleWrapper());
+                return t -> {
+                    partial.value += body.applyAsDouble(t);
+                    return false;
+                };
+            });
+            double sum = 0;
+            for(DoubleWrapper partial : partials)
+                sum += partial.value;
+            return sum;
+        }
+
+        /**
+         * Executes this foreach loop and returns the smallest non-null element according to the
+         * given comparator.
+         *
+         * @param comparator The comparator to compare the elements with
+         * @return The smallest element, or <code>null</code> if the source contains no non-null
+         *         elements. If multiple elements are minimal, an arbitrary one of them may be returned.
+         */
+        public T min(Comparator<? super T> comparator) {
+            Arguments.checkNull(comparator, "comparator");
+            List<Wrapper<T>> partials = new ArrayList<>();
+            this.<RuntimeException>accumulate(() -> {
+                Wrapper<T> partial = register(partials, new Wrapper<>());
+                return t -> {
+                    if(t != null && (partial.value == null || comparator.compare(t, partial.value) < 0))
+                        partial.value = t;
+                    return false;
+                };
+            });
+            return Parallel.min(partials, comparator);
+        }
+
+        /**
+         * Executes this foreach loop and returns the largest non-null element according to the
+         * given comparator.
+         *
+         * @param comparator The comparator to compare the elements with
+         * @return The largest element, or <code>null</code> if the source contains no non-null
+         *         elements. If multiple elements are maximal, an arbitrary one of them may be returned.
+         */
+        public T max(Comparator<? super T> comparator) {
+            Arguments.checkNull(comparator, "comparator");
+            return min(comparator.reversed());
+        }
+
+        /**
+         * Executes this foreach loop and performs a mutable reduction into result containers. This is
+         * semantically equivalent to the sequential loop
+         * <pre>
+         * R result = supplier.get();
+         * for(T t : source)
+         *     accumulator.accept(result, t);
+         * return result;</pre>
+         * Every worker thread accumulates into its own container created by the supplier, and the
+         * containers are merged using the combiner after the loop has finished.
+         *
+         * @param supplier Creates a new, empty result container
+         * @param accumulator Adds the given element to the given result container
+         * @param combiner Merges all elements of the second container into the first container
+         * @return The result container
+         * @throws E If thrown by the accumulator
+         */
+        public <R, E extends Throwable> R collect(Supplier<? extends R> supplier, ThrowingBiConsumer<? super R, ? super T, ? extends E> accumulator, BiConsumer<? super R, ? super R> combiner) throws E {
+            Arguments.checkNull(supplier, "supplier");
+            Arguments.checkNull(accumulator, "accumulator");
+            Arguments.checkNull(combiner, "combiner");
+            List<R> partials = new ArrayList<>();
+            this.<E>accumulate(() -> {
+                R partial = register(partials, supplier.get());
+                return t -> {
+                    accumulator.accept(partial, t);
+                    return false;
+                };
+            });
+            return combine(partials, supplier, combiner);
+        }
+
+        /**
+         * Executes this foreach loop and returns the results for all elements, in the order of the
+         * source. This is equivalent to
+         * <pre>
+         * List&lt;R&gt; results = new ArrayList&lt;&gt;();
+         * for(T t : source)
+         *     results.add(body.apply(t));
+         * return results;</pre>
+         * Every iteration writes its result directly into its own slot of the result, thus no
+         * synchronization is needed per element. Sources other than arrays and {@link RandomAccess}
+         * lists are first copied into a list on the calling thread, to determine the position of each
+         * element.
+         *
+         * @param body The loop body that computes the result for an element
+         * @return The results for all elements, in source order, including <code>null</code> results
+         * @throws E If thrown by the loop body
+         */
+        @SuppressWarnings("unchecked")
+        public <R, E extends Throwable> ListStream<R> map(ThrowingFunction<? super T, ? extends R, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            IndexedSource<? extends T> indexed = indexedSource();
+            Object[] results = new Object[indexed.size()];
+            indices(indexed).run(i -> results[i] = body.apply(indexed.get(i)));
+            return ListStream.of(Arrays.asList((R[]) results));
+        }
+
+        /**
+         * Executes this foreach loop and returns the results for all elements, in the order of the
+         * source. The results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result for an element
+         * @return The results for all elements, in source order
+         * @throws E If thrown by the loop body
+         * @see #map(ThrowingFunction)
+         */
+        public <E extends Throwable> int[] mapToInt(ThrowingToIntFunction<? super T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            IndexedSource<? extends T> indexed = indexedSource();
+            int[] results = new int[indexed.size()];
+            indices(indexed).run(i -> results[i] = body.applyAsInt(indexed.get(i)));
+            return results;
+        }
+
+        /**
+         * Executes this foreach loop and returns the results for all elements, in the order of the
+         * source. The results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result for an element
+         * @return The results for all elements, in source order
+         * @throws E If thrown by the loop body
+         * @see #map(ThrowingFunction)
+         */
+        public <E extends Throwable> long[] mapToLong(ThrowingToLongFunction<? super T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            IndexedSource<? extends T> indexed = indexedSource();
+            long[] results = new long[indexed.size()];
+            indices(indexed).run(i -> results[i] = body.applyAsLong(indexed.get(i)));
+            return results;
+        }
+
+        /**
+         * Executes this foreach loop and returns the results for all elements, in the order of the
+         * source. The results are written directly into the returned array without boxing.
+         *
+         * @param body The loop body that computes the result for an element
+         * @return The results for all elements, in source order
+         * @throws E If thrown by the loop body
+         * @see #map(ThrowingFunction)
+         */
+        public <E extends Throwable> double[] mapToDouble(ThrowingToDoubleFunction<? super T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            IndexedSource<? extends T> indexed = indexedSource();
+            double[] results = new double[indexed.size()];
+            indices(indexed).run(i -> results[i] = body.applyAsDouble(indexed.get(i)));
+            return results;
+        }
+
+        /**
+         * Returns the source with random access to its elements. Sources which are not indexed
+         * are copied into a list on the calling thread.
+         */
+        private IndexedSource<? extends T> indexedSource() {
+            if(source instanceof IndexedSource)
+                return (IndexedSource<? extends T>) source;
+            List<T> elements = new ArrayList<>();
+            for(T t : source)
+                elements.add(t);
+            return new ListSource<>(elements);
+        }
+
+
+        private interface Source<T> extends Iterable<T> {
+            Stream<T> stream();
+        }
+
+        /**
+         * A source with random access to its elements, which can be split by index ranges.
+         */
+        private interface IndexedSource<T> extends Source<T> {
+            int size();
+            T get(int index);
+        }
+
+        private static final class ArraySource<T> implements IndexedSource<T> {
+
+            private final T[] array;
+
+            private ArraySource(T[] array) {
+                this.array = array;
+            }
+
+            @Override
+            public int size() {
+                return array.length;
+            }
+
+            @Override
+            public T get(int index) {
+                return array[index];
+            }
+
+            @Override
+            public Stream<T> stream() {
+                return Arrays.stream(array);
+            }
+
+            @NotNull
+            @Override
+            public Iterator<T> iterator() {
+                return Utils.iterator(array);
+            }
+        }
+
+        private static final class ListSource<T> implements IndexedSource<T> {
+
+            private final List<T> list;
+
+            private ListSource(List<T> list) {
+                this.list = list;
+            }
+
+            @Override
+            public int size() {
+                return list.size();
+            }
+
+            @Override
+            public T get(int index) {
+                return list.get(index);
+            }
+
+            @Override
+            public Stream<T> stream() {
+                return list.parallelStream();
+            }
+
+            @NotNull
+            @Override
+            public Iterator<T> iterator() {
+                return list.iterator();
+            }
+        }
+    }
+
+
+    /**
+     * The parallel equivalent of two nested for-i loops:
+     * <pre>
+     * for(int i = 0; i < rows; i++) {
+     *     for(int j = 0; j < cols; j++) {
+     *         // Do something
+     *     }
+     * }</pre>
+     * The iteration space is split into rectangular tiles, each of which is executed by a single
+     * thread, row by row. Compared to nesting two {@link For} loops or flattening the indices, this
+     * keeps iterations that access neighboring data on the same thread, which improves cache locality.
+     * The tile size can be set using {@link #tileSize(int, int)}, or is chosen automatically such that
+     * a tile contains a few thousand iterations, and there are enough tiles to keep all threads busy.
+     *
+     * <p>The order in which the tiles are executed is up to implementation, each tile may be
+     * executed on an arbitrary thread at an arbitrary time during the loop. The tiles are
+     * distributed across the threads like the iterations of a {@link For} loop, and the options
+     * {@link #threads(int)}, {@link #balanced(boolean)}, {@link #stealing(boolean)} and
+     * {@link #executor(Executor)} behave identical.</p>
+     *
+     * <p>If the loop body throws any kind of exception (checked or unchecked), the loop will terminate
+     * early and the exception will be rethrown on the calling thread.</p>
+     *
+     * <p>Instances of this class can safely be reused.</p>
+     */
+    public static class For2D {
+
+        private final int rows;
+        private final int cols;
+        private int tileRows = 0;
+        private int tileCols = 0;
+        private int numThreads = -1;
+        private boolean balanced = false;
+        private boolean stealing = false;
+        private Executor executor = null;
+
+        For2D(int rows, int cols) {
+            this.rows = Arguments.checkRange(rows, 0, null);
+            this.cols = Arguments.checkRange(cols, 0, null);
         }
 
         /**
-         * Sets the source to iterate over to the given stream, which semantically corresponds to
-         * <pre>
-         * source.parallel().forEach(doSomething)</pre>
-         * This class may be used to further control the execution parallelism, e.g. with
-         * {@link #threads(int)}.
+         * Sets the size of the tiles the iteration space is split into. Every tile is executed by
+         * a single thread. By default, the tile size is chosen automatically.
          *
-         * @param source The stream whose elements to loop over
-         * @return This foreach loop
+         * @param rows The number of rows (iterations of the outer loop) per tile
+         * @param cols The number of columns (iterations of the inner loop) per tile
+         * @return This loop
          */
-        public <U extends T> Foreach<T> source(Stream<U> source) {
-            Arguments.checkNull(source, "source");
-            this.source = new Source<U>() {
-                @Override
-                public Stream<U> stream() {
-                    return source;
-                }
-                @NotNull
-                @Override
-                public Iterator<U> iterator() {
-                    return source.iterator();
-                }
-            };
+        public For2D tileSize(@Range(from = 1) int rows, @Range(from = 1) int cols) {
+            this.tileRows = Arguments.checkRange(rows, 1, null);
+            this.tileCols = Arguments.checkRange(cols, 1, null);
             return this;
         }
 
-        @Override
-        int threads() {
-            return numThreads;
+        /**
+         * Resets the tile size to be chosen automatically, which is the default behavior.
+         *
+         * @return This loop
+         */
+        public For2D autoTileSize() {
+            tileRows = tileCols = 0;
+            return this;
         }
 
         /**
-         * Sets the number of threads to use to parallelize this for loop:
-         * <ul>
-         *     <li>A positive value greater than <code>1</code> causes the loop execution to use
-         *     <i>at most</i> that many threads. The library may however choose to use less threads,
-         *     particularly there are less iterations in the loop than there are threads, or if the
-         *     loop already completed before all threads were started.</li>
-         *     <li>A value of <code>1</code> will result in sequential execution, just like a regular
-         *     foreach loop</li>
-         *     <li>Values less or equal to <code>0</code> result in the library choosing the thread
-         *     count automatically, usually 1 per CPU core. This is the default behavior.</li>
-         * </ul>
+         * Sets the number of threads to use to parallelize this loop. See {@link For#threads(int)}.
          *
          * @param count The number of threads to use for execution, or <=0 to choose automatically
-         * @return This foreach loop
+         * @return This loop
          */
-        public Foreach<T> threads(int count) {
+        public For2D threads(int count) {
             this.numThreads = count;
             return this;
         }
 
         /**
-         * Executes this foreach loop, stopping early once any element has fulfilled the condition, that
-         * is, the predicate returned <code>true</code>. This is equivalent to the sequential loop
+         * Controls whether the tiles should be split evenly across all threads. See {@link For#balanced(boolean)}.
+         * Enabling this option disables {@link #stealing(boolean)}.
+         *
+         * @param balanced Whether every thread should execute the same number of tiles
+         * @return This loop
+         */
+        public For2D balanced(boolean balanced) {
+            this.balanced = balanced;
+            if(balanced)
+                stealing = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>balanced(true)</code>.
+         *
+         * @return This loop
+         * @see #balanced(boolean)
+         */
+        public For2D balanced() {
+            return balanced(true);
+        }
+
+        /**
+         * Controls whether the tiles should be distributed using work stealing. See {@link For#stealing(boolean)}.
+         * Enabling this option disables {@link #balanced(boolean)}.
+         *
+         * @param stealing Whether to distribute the tiles using work stealing
+         * @return This loop
+         */
+        public For2D stealing(boolean stealing) {
+            this.stealing = stealing;
+            if(stealing)
+                balanced = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>stealing(true)</code>.
+         *
+         * @return This loop
+         * @see #stealing(boolean)
+         */
+        public For2D stealing() {
+            return stealing(true);
+        }
+
+        /**
+         * Sets the executor on which the worker threads of this loop should run. See {@link For#executor(Executor)}.
+         *
+         * @param executor The executor to run the workers on, or <code>null</code> to use the default
+         * @return This loop
+         */
+        public For2D executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Executes this loop, stopping early once any iteration has fulfilled the condition, that
+         * is, it returned <code>true</code>. This is equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     if(body.test(t))
-         *         return true;
-         * }
+         * for(int i = 0; i < rows; i++)
+         *     for(int j = 0; j < cols; j++)
+         *         if(body.test(i, j))
+         *             return true;
          * return false;</pre>
          *
-         * @param body The loop body that tests whether a given element fulfills the exit condition
+         * @param body The loop body that tests whether a given pair of numbers fulfills the exit condition
          * @return Whether any loop iteration returned <code>true</code>. If no iterations were performed,
          *         the result is <code>false</code>.
          * @throws E If thrown by the loop body
          */
-        public <E extends Throwable> boolean any(ThrowingPredicate<? super T, ? extends E> body) throws E {
-            if(source instanceof ArraySource) {
-                T[] arr = ((ArraySource<? extends T>) source).array;
-                return Parallel.For(arr.length).threads(numThreads).any(i -> body.test(arr[i]));
-            }
-            return new ForeachExecution<>(this, body).execute();
+        public <E extends Throwable> boolean any(ThrowingIntBiPredicate<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            if(rows == 0 || cols == 0)
+                return false;
+
+            int[] tile = { tileRows, tileCols };
+            if(tileRows == 0)
+                chooseTileSize(new int[] { rows, cols }, tile, numThreads);
+            int tr = tile[0], tc = tile[1];
+            int tilesPerRow = (cols + tc - 1) / tc;
+            long tileCount = (long) ((rows + tr - 1) / tr) * tilesPerRow;
+
+            return Parallel.For(tileCount)
+                    .threads(numThreads)
+                    .executor(executor)
+                    .balanced(balanced)
+                    .stealing(stealing)
+                    .anyL(t -> {
+                        int rowStart = (int) (t / tilesPerRow) * tr, colStart = (int) (t % tilesPerRow) * tc;
+                        int rowEnd = Math.min(rows, rowStart + tr), colEnd = Math.min(cols, colStart + tc);
+                        for(int i=rowStart; i<rowEnd; i++)
+                            for(int j=colStart; j<colEnd; j++)
+                                if(body.test(i, j))
+                                    return true;
+                        return false;
+                    });
         }
 
         /**
-         * Executes this foreach loop, stopping early if any element has not fulfilled the condition, that
-         * is, the predicate returned <code>false</code>. This is equivalent to the sequential loop
+         * Executes this loop, stopping early if any iteration has not fulfilled the condition, that
+         * is, it returned <code>false</code>. This is equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     if(!body.test(t))
-         *         return false;
-         * }
+         * for(int i = 0; i < rows; i++)
+         *     for(int j = 0; j < cols; j++)
+         *         if(!body.test(i, j))
+         *             return false;
          * return true;</pre>
          *
-         * @param body The loop body that tests whether a given element fulfills the continue condition
+         * @param body The loop body that tests whether a given pair of numbers fulfills the continue condition
          * @return <code>false</code>, if any iteration returned <code>false</code>, <code>true</code>
          *         otherwise (including if the loop body was never executed)
          * @throws E If thrown by the loop body
          */
-        public <E extends Throwable> boolean all(ThrowingPredicate<? super T, ? extends E> body) throws E {
-            return !any(e -> !body.test(e));
+        public <E extends Throwable> boolean all(ThrowingIntBiPredicate<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return !any((i,j) -> !body.test(i,j));
         }
 
         /**
-         * Executes this foreach loop, stopping early once any iteration returned a non-null value. This is
+         * Executes this loop, stopping early once any iteration returned a non-null value. This is
          * equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     R r = body.apply(t);
-         *     if(r != null)
-         *         return r;
+         * for(int i = 0; i < rows; i++) {
+         *     for(int j = 0; j < cols; j++) {
+         *         T t = body.apply(i, j);
+         *         if(t != null)
+         *             return t;
+         *     }
          * }
          * return null;</pre>
          *
@@ -907,154 +2930,589 @@ public final class Parallel {
          *         iterations returned a non-null value, an arbitrary one of them may be returned.
          * @throws E If thrown by the loop body
          */
-        public <R, E extends Throwable> R find(ThrowingFunction<? super T, ? extends R, ? extends E> body) throws E {
-            Wrapper<R> result = new Wrapper<>(null);
-            any(t -> {
-                R res = body.apply(t);
+        public <T, E extends Throwable> T find(ThrowingIntBiFunction<? extends T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            Wrapper<T> result = new Wrapper<>(null);
+            any((i,j) -> {
+                T res = body.apply(i,j);
                 if(res != null)
                     result.value = res;
                 return result.value != null;
             });
-            return null;
+            return result.value;
         }
 
         /**
-         * Executes this foreach loop, stopping early once any iteration returned a non-null value. If no
+         * Executes this loop, stopping early once any iteration returned a non-null value. If no
          * iteration returned a non-null value, the value returned by the given supplier is returned
-         * instead. This is equivalent to the sequential loop
-         * <pre>
-         * for(T t : source) {
-         *     R r = body.apply(t);
-         *     if(r != null)
-         *         return r;
-         * }
-         * return elseGet.get();</pre>
+         * instead.
          *
          * @param body The loop body that computes the loop result value, or <code>null</code>
          * @param elseGet The value to return if all iterations of the loop returned <code>null</code>.
          *                The supplier is only evaluated if all iterations returned <code>null</code>,
          *                and never more than once.
          * @return If any loop iteration returned a non-null value, that value is returned, otherwise
-         *         the value returned by the given supplier (including the case where the body is
-         *         never executed). If multiple iterations returned a non-null value, an arbitrary one
-         *         of them may be returned.
+         *         the value returned by the given supplier
          * @throws E If thrown by the loop body or the supplier
          */
-        public <R, E extends Throwable> R find(ThrowingFunction<? super T, ? extends R, ? extends E> body, ThrowingSupplier<? extends R, ? extends E> elseGet) throws E {
-            R result = find(body);
+        public <T, E extends Throwable> T find(ThrowingIntBiFunction<? extends T, ? extends E> body, ThrowingSupplier<? extends T, ? extends E> elseGet) throws E {
+            Arguments.checkNull(elseGet, "elseGet");
+            T result = find(body);
             return result != null ? result : elseGet.get();
         }
 
         /**
-         * Executes this foreach loop. This is equivalent to the sequential loop
+         * Executes this loop. This is equivalent to the sequential loop
          * <pre>
-         * for(T t : source) {
-         *     body.accept(t);
-         * }</pre>
+         * for(int i = 0; i < rows; i++)
+         *     for(int j = 0; j < cols; j++)
+         *         body.accept(i, j);</pre>
+         *
+         * @param body The loop body to execute for every iteration
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> void run(ThrowingIntBiConsumer<? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            any((i,j) -> {
+                body.accept(i,j);
+                return false;
+            });
+        }
+    }
+
+    /**
+     * The parallel equivalent of an arbitrary number of nested for-i loops:
+     * <pre>
+     * for(int i0 = 0; i0 < dims[0]; i0++) {
+     *     for(int i1 = 0; i1 < dims[1]; i1++) {
+     *         ...
+     *             // Do something with { i0, i1, ... }
+     *     }
+     * }</pre>
+     * This is the generalization of {@link For2D} to any number of dimensions. The iteration space is
+     * split into tiles, each of which is executed by a single thread, with the last dimension being the
+     * innermost loop. The loop body receives the index as array, which is reused between iterations of
+     * the same thread and thus must neither be modified nor retained by the loop body.
+     *
+     * <p>The order in which the tiles are executed is up to implementation, each tile may be
+     * executed on an arbitrary thread at an arbitrary time during the loop. The tiles are
+     * distributed across the threads like the iterations of a {@link For} loop, and the options
+     * {@link #threads(int)}, {@link #balanced(boolean)}, {@link #stealing(boolean)} and
+     * {@link #executor(Executor)} behave identical.</p>
+     *
+     * <p>If the loop body throws any kind of exception (checked or unchecked), the loop will terminate
+     * early and the exception will be rethrown on the calling thread.</p>
+     *
+     * <p>Instances of this class can safely be reused.</p>
+     */
+    public static class ForND {
+
+        private final int[] dims;
+        private int[] tileSize = null;
+        private int numThreads = -1;
+        private boolean balanced = false;
+        private boolean stealing = false;
+        private Executor executor = null;
+
+        ForND(int[] dims) {
+            Arguments.checkNull(dims, "dims");
+            if(dims.length == 0)
+                throw new IllegalArgumentException("At least one dimension required");
+            for(int d : dims)
+                Arguments.checkRange(d, 0, null);
+            this.dims = dims.clone();
+        }
+
+        /**
+         * Sets the size of the tiles the iteration space is split into. Every tile is executed by
+         * a single thread. By default, the tile size is chosen automatically.
+         *
+         * @param sizes The size of a tile in each dimension, must have one entry per dimension
+         * @return This loop
+         */
+        public ForND tileSize(int... sizes) {
+            Arguments.checkNull(sizes, "sizes");
+            if(sizes.length != dims.length)
+                throw new IllegalArgumentException("Expected "+dims.length+" tile dimensions, got "+sizes.length);
+            for(int size : sizes)
+                Arguments.checkRange(size, 1, null);
+            tileSize = sizes.clone();
+            return this;
+        }
+
+        /**
+         * Resets the tile size to be chosen automatically, which is the default behavior.
+         *
+         * @return This loop
+         */
+        public ForND autoTileSize() {
+            tileSize = null;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads to use to parallelize this loop. See {@link For#threads(int)}.
+         *
+         * @param count The number of threads to use for execution, or <=0 to choose automatically
+         * @return This loop
+         */
+        public ForND threads(int count) {
+            this.numThreads = count;
+            return this;
+        }
+
+        /**
+         * Controls whether the tiles should be split evenly across all threads. See {@link For#balanced(boolean)}.
+         * Enabling this option disables {@link #stealing(boolean)}.
+         *
+         * @param balanced Whether every thread should execute the same number of tiles
+         * @return This loop
+         */
+        public ForND balanced(boolean balanced) {
+            this.balanced = balanced;
+            if(balanced)
+                stealing = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>balanced(true)</code>.
+         *
+         * @return This loop
+         * @see #balanced(boolean)
+         */
+        public ForND balanced() {
+            return balanced(true);
+        }
+
+        /**
+         * Controls whether the tiles should be distributed using work stealing. See {@link For#stealing(boolean)}.
+         * Enabling this option disables {@link #balanced(boolean)}.
+         *
+         * @param stealing Whether to distribute the tiles using work stealing
+         * @return This loop
+         */
+        public ForND stealing(boolean stealing) {
+            this.stealing = stealing;
+            if(stealing)
+                balanced = false;
+            return this;
+        }
+
+        /**
+         * Shorthand for <code>stealing(true)</code>.
+         *
+         * @return This loop
+         * @see #stealing(boolean)
+         */
+        public ForND stealing() {
+            return stealing(true);
+        }
+
+        /**
+         * Sets the executor on which the worker threads of this loop should run. See {@link For#executor(Executor)}.
+         *
+         * @param executor The executor to run the workers on, or <code>null</code> to use the default
+         * @return This loop
+         */
+        public ForND executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Executes this loop, stopping early once any iteration has fulfilled the condition, that
+         * is, it returned <code>true</code>.
+         *
+         * @param body The loop body that tests whether a given index fulfills the exit condition. The
+         *             index array must neither be modified nor retained.
+         * @return Whether any loop iteration returned <code>true</code>. If no iterations were performed,
+         *         the result is <code>false</code>.
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> boolean any(ThrowingPredicate<? super int[], ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            for(int d : dims)
+                if(d == 0) return false;
+
+            int n = dims.length;
+            int[] tile = tileSize != null ? tileSize : chooseTileSize(dims, new int[n], numThreads);
+            int[] tileCounts = new int[n];
+            long tileCount = 1;
+            for(int k=0; k<n; k++) {
+                tileCounts[k] = (dims[k] + tile[k] - 1) / tile[k];
+                tileCount *= tileCounts[k];
+            }
+
+            return Parallel.For(tileCount)
+                    .threads(numThreads)
+                    .executor(executor)
+                    .balanced(balanced)
+                    .stealing(stealing)
+                    .<E>accumulate(() -> {
+                        int[] from = new int[n], to = new int[n], index = new int[n];
+                        return t -> {
+                            for(int k=n-1; k>=0; k--) {
+                                from[k] = (int) (t % tileCounts[k]) * tile[k];
+                                to[k] = Math.min(dims[k], from[k] + tile[k]);
+                                t /= tileCounts[k];
+                            }
+                            System.arraycopy(from, 0, index, 0, n);
+                            while(true) {
+                                if(body.test(index))
+                                    return true;
+                                // Increment index, innermost dimension first
+                                int k = n-1;
+                                while(++index[k] == to[k]) {
+                                    index[k] = from[k];
+                                    if(--k < 0)
+                                        return false;
+                                }
+                            }
+                        };
+                    });
+        }
+
+        /**
+         * Executes this loop, stopping early if any iteration has not fulfilled the condition, that
+         * is, it returned <code>false</code>.
+         *
+         * @param body The loop body that tests whether a given index fulfills the continue condition.
+         *             The index array must neither be modified nor retained.
+         * @return <code>false</code>, if any iteration returned <code>false</code>, <code>true</code>
+         *         otherwise (including if the loop body was never executed)
+         * @throws E If thrown by the loop body
+         */
+        public <E extends Throwable> boolean all(ThrowingPredicate<? super int[], ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            return !any(i -> !body.test(i));
+        }
+
+        /**
+         * Executes this loop, stopping early once any iteration returned a non-null value.
+         *
+         * @param body The loop body that computes the loop result value, or <code>null</code>. The
+         *             index array must neither be modified nor retained.
+         * @return If any loop iteration returned a non-null value, that value is returned, otherwise
+         *         <code>null</code> (including the case where the body is never executed). If multiple
+         *         iterations returned a non-null value, an arbitrary one of them may be returned.
+         * @throws E If thrown by the loop body
+         */
+        public <T, E extends Throwable> T find(ThrowingFunction<? super int[], ? extends T, ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            Wrapper<T> result = new Wrapper<>(null);
+            any(i -> {
+                T res = body.apply(i);
+                if(res != null)
+                    result.value = res;
+                return result.value != null;
+            });
+            return result.value;
+        }
+
+        /**
+         * Executes this loop, stopping early once any iteration returned a non-null value. If no
+         * iteration returned a non-null value, the value returned by the given supplier is returned
+         * instead.
+         *
+         * @param body The loop body that computes the loop result value, or <code>null</code>. The
+         *             index array must neither be modified nor retained.
+         * @param elseGet The value to return if all iterations of the loop returned <code>null</code>.
+         *                The supplier is only evaluated if all iterations returned <code>null</code>,
+         *                and never more than once.
+         * @return If any loop iteration returned a non-null value, that value is returned, otherwise
+         *         the value returned by the given supplier
+         * @throws E If thrown by the loop body or the supplier
+         */
+        public <T, E extends Throwable> T find(ThrowingFunction<? super int[], ? extends T, ? extends E> body, ThrowingSupplier<? extends T, ? extends E> elseGet) throws E {
+            Arguments.checkNull(elseGet, "elseGet");
+            T result = find(body);
+            return result != null ? result : elseGet.get();
+        }
+
+        /**
+         * Executes this loop.
          *
-         * @param body The loop body to execute for every element
+         * @param body The loop body to execute for every index. The index array must neither be
+         *             modified nor retained.
          * @throws E If thrown by the loop body
          */
-        public <E extends Throwable> void run(ThrowingConsumer<? super T, ? extends E> body) throws E {
-            if(source instanceof ArraySource) {
-                T[] arr = ((ArraySource<? extends T>) source).array;
-                Parallel.For(arr.length).threads(numThreads).any(i -> {
-                    body.accept(arr[i]);
-                    return false;
-                });
-            }
-            else any(t -> {
-                body.accept(t);
+        public <E extends Throwable> void run(ThrowingConsumer<? super int[], ? extends E> body) throws E {
+            Arguments.checkNull(body, "body");
+            any(i -> {
+                body.accept(i);
                 return false;
             });
         }
+    }
 
+    /**
+     * The number of iterations a tile should contain approximately, if the tile size is chosen automatically.
+     */
+    private static final int TILE_ITERATIONS = 4096;
+    /**
+     * The maximum size of an automatically chosen tile in all but the outermost dimension.
+     */
+    private static final int MAX_TILE_WIDTH = 64;
 
-        private interface Source<T> extends Iterable<T> {
-            Stream<T> stream();
+    /**
+     * Chooses a tile size for the given iteration space. The inner dimensions are filled first, such that
+     * a tile contains roughly {@link #TILE_ITERATIONS} iterations. Afterwards, the tiles are shrunk while
+     * there are not enough tiles to keep all threads busy.
+     *
+     * @param dims The size of the iteration space in each dimension, all positive
+     * @param tile The array to write the tile size into
+     * @param numThreads The number of threads as configured for the loop
+     * @return The tile size array passed
+     */
+    private static int[] chooseTileSize(int[] dims, int[] tile, int numThreads) {
+        int n = dims.length;
+        int remaining = TILE_ITERATIONS;
+        for(int k=n-1; k>0; k--) {
+            tile[k] = Math.max(1, Math.min(dims[k], Math.min(MAX_TILE_WIDTH, remaining)));
+            remaining = Math.max(1, remaining / tile[k]);
         }
-
-        private static final class ArraySource<T> implements Source<T> {
-
-            private final T[] array;
-
-            private ArraySource(T[] array) {
-                this.array = array;
-            }
-
-            @Override
-            public Stream<T> stream() {
-                return Arrays.stream(array);
-            }
-
-            @NotNull
-            @Override
-            public Iterator<T> iterator() {
-                return Utils.iterator(array);
+        tile[0] = Math.min(dims[0], remaining);
+
+        long minTiles = 4L * (numThreads <= 0 ? commonThreadCount() : numThreads);
+        while(true) {
+            long tiles = 1;
+            int largest = -1;
+            for(int k=0; k<n; k++) {
+                tiles *= (dims[k] + tile[k] - 1) / tile[k];
+                if(tile[k] > 1 && (largest == -1 || tile[k] > tile[largest]))
+                    largest = k;
             }
+            if(tiles >= minTiles || largest == -1)
+                return tile;
+            tile[largest] = (tile[largest] + 1) / 2;
         }
     }
 
 
+    /**
+     * The counters of a single worker of a loop, only written by that worker.
+     */
+    private static final class WorkerStats {
+        long iterations;
+        long chunks;
+        long lockWaitNanos;
+        long busyNanos;
+    }
+
     private static abstract class LoopExecution<E extends Throwable, B> {
 
         protected final int numThreads;
+        protected final Executor executor;
+        /**
+         * The nesting depth of the thread that started this loop, see {@link #nestingDepth()}.
+         */
+        protected final int depth;
+        /**
+         * The loop body shared by all workers, or <code>null</code> if every worker uses its
+         * own loop body, obtained using {@link #workerBody(int)}.
+         */
         protected final B body;
+        private final Supplier<? extends B> workerBodies;
+        private final LoopStats stats;
+        /**
+         * The statistics of every worker, or <code>null</code> if no statistics are collected.
+         */
+        private WorkerStats[] workerStats;
 
         protected ExceptionContainer<E> exceptions;
         protected boolean stop;
 
         protected LoopExecution(Loop loop, B body) {
-            this.numThreads = loop.threads();
+            this.depth = nestingDepth();
+            this.numThreads = depth >= maxNestingDepth ? 1 : loop.threads();
+            this.executor = loop.executor();
             this.body = Arguments.checkNull(body, "body");
+            this.workerBodies = null;
+            this.stats = loop.stats();
+        }
+
+        protected LoopExecution(Loop loop, Supplier<? extends B> workerBodies) {
+            this.depth = nestingDepth();
+            this.numThreads = depth >= maxNestingDepth ? 1 : loop.threads();
+            this.executor = loop.executor();
+            this.body = null;
+            this.workerBodies = Arguments.checkNull(workerBodies, "workerBodies");
+            this.stats = loop.stats();
+        }
+
+        /**
+         * Returns the loop body to be used by a single worker. Every worker has to call this once
+         * before it starts working, and may not share the returned body with other workers.
+         *
+         * @param id The index of the calling worker
+         * @return The loop body for the calling worker
+         */
+        protected B workerBody(int id) {
+            B body = this.body != null ? this.body : workerBodies.get();
+            WorkerStats stats = workerStats(id);
+            return stats != null ? counting(body, stats) : body;
+        }
+
+        /**
+         * Returns a loop body which behaves like the given one, but additionally counts its
+         * invocations in the given statistics.
+         */
+        protected abstract B counting(B body, WorkerStats stats);
+
+        /**
+         * Prepares collecting statistics for the given number of workers, if statistics should be
+         * collected at all.
+         *
+         * @param workers The number of workers the loop will be executed with
+         */
+        protected void initStats(int workers) {
+            if(stats == null)
+                return;
+            workerStats = new WorkerStats[workers];
+            for(int i=0; i<workers; i++)
+                workerStats[i] = new WorkerStats();
+        }
+
+        /**
+         * Returns the statistics object into which the worker with the given index should record
+         * its work, or <code>null</code> if no statistics are collected.
+         *
+         * @param id The index of the worker
+         * @return The statistics of that worker, or <code>null</code>
+         */
+        protected WorkerStats workerStats(int id) {
+            return workerStats != null ? workerStats[id] : null;
         }
 
         protected abstract String name();
 
-        public abstract boolean execute() throws E;
+        /**
+         * Executes the loop, and records its statistics if requested.
+         *
+         * @return Whether any iteration of the loop returned <code>true</code>
+         */
+        public final boolean execute() throws E {
+            if(stats == null)
+                return executeLoop();
+
+            long start = System.nanoTime();
+            try {
+                return executeLoop();
+            } finally {
+                long wallTime = System.nanoTime() - start;
+                if(workerStats == null)
+                    initStats(0);
+                else if(numThreads == 1) {
+                    // Executed sequentially without going through runWorkers()
+                    workerStats[0].busyNanos = wallTime;
+                    workerStats[0].chunks = 1;
+                }
+                stats.record(new LoopReport(name(), wallTime, workerStats));
+            }
+        }
+
+        protected abstract boolean executeLoop() throws E;
 
 
-        protected void runWorkers(ThrowingRunnable<? extends E> worker) {
-            int common = commonThreadCount(); // +1 for current thread
-            if(numThreads <= common) {
-                // Just use common pool
-                LongStream.range(0, numThreads <= 0 ? common : numThreads).parallel().forEach($ -> exceptions.tryRun(worker));
+        /**
+         * Runs the given code as part of a worker of this loop, such that any loops started from
+         * within know their nesting depth. Exceptions are collected in {@link #exceptions}.
+         *
+         * @param code The code to run
+         * @return Whether the code completed without an exception
+         */
+        protected boolean runNested(ThrowingRunnable<? extends E> code) {
+            IntWrapper marker = DEPTH.get();
+            int outer = marker.value;
+            marker.value = depth + 1;
+            try {
+                return exceptions.tryRun(code);
+            } finally {
+                marker.value = outer;
             }
-            else {
-                IntWrapper done = new IntWrapper();
-
-                // Spawn additional worker threads, but also use common thread pool
-                for(int j = 0; j < numThreads - common; j++) {
-                    // Stop spawning threads if the workload is already done
-                    if(done.value == 0) {
-                        new Thread(() -> {
-                            exceptions.tryRun(worker);
-                            synchronized(done) {
-                                done.value++;
-                                done.notifyAll();
-                            }
-                        }, "Parallel."+name()+"() worker thread "+(j+1)).start();
-                    }
-                    else synchronized(done) {
-                        done.value += numThreads - common - j;
-                        done.notifyAll();
-                        break;
-                    }
-                }
+        }
+
+        /**
+         * Returns whether the loop can be executed using a parallel stream, which is the case if
+         * all workers share the same body, the common pool should be used, the number of threads
+         * matches the size of the common pool, and no statistics have to be collected.
+         *
+         * @return Whether a parallel stream can be used for the execution
+         */
+        protected boolean useParallelStream() {
+            return body != null && executor == null && stats == null && (numThreads <= 0 || numThreads == commonThreadCount());
+        }
 
-                // Use common thread pool for remaining workers, but only if not already done
-                if(done.value == 0)
-                    LongStream.range(0, common).parallel().forEach($ -> exceptions.tryRun(worker));
+        /**
+         * Returns the number of workers to use when executing with {@link #runWorkers(int, ThrowingIntConsumer)}.
+         *
+         * @return The number of workers to start
+         */
+        protected int workerCount() {
+            return numThreads <= 0 ? commonThreadCount() : numThreads;
+        }
 
-                // Wait for all threads to finish
-                synchronized(done) {
-                    while(done.value < numThreads - common) try {
-                        done.wait();
-                    } catch(InterruptedException e) {
-                        throw Utils.rethrow(e);
-                    }
+        /**
+         * Runs the given number of workers in parallel, and waits until all of them have finished.
+         * The calling thread runs the first worker itself, all other workers are submitted to the
+         * executor. Workers not yet started by the time the calling thread has finished its own
+         * work will be run by the calling thread, such that the loop makes progress even if the
+         * executor is saturated. Nested loops never use more threads than the common pool has, they
+         * only rely on the calling thread to run any workers the pool did not pick up. Exceptions
+         * thrown by the workers are collected in {@link #exceptions}.
+         *
+         * @param count The number of workers to run
+         * @param worker The workload of a worker, given the index of the worker
+         */
+        protected void runWorkers(int count, ThrowingIntConsumer<? extends E> worker) {
+            initStats(count);
+            AtomicIntegerArray claimed = new AtomicIntegerArray(count);
+            CountDownLatch done = new CountDownLatch(count - 1);
+
+            Executor executor = this.executor;
+            if(executor == null)
+                executor = count <= commonThreadCount() || depth > 0 ? ForkJoinPool.commonPool() : WorkerPool.EXECUTOR;
+
+            for(int i=1; i<count; i++) {
+                int index = i;
+                try {
+                    executor.execute(() -> runWorker(index, worker, claimed, done));
+                } catch(RejectedExecutionException e) {
+                    // Will be run by the calling thread
                 }
             }
+
+            runTimed(0, worker);
+            for(int i=1; i<count; i++)
+                runWorker(i, worker, claimed, done);
+
+            try {
+                done.await();
+            } catch(InterruptedException e) {
+                throw Utils.rethrow(e);
+            }
+        }
+
+        private void runWorker(int index, ThrowingIntConsumer<? extends E> worker, AtomicIntegerArray claimed, CountDownLatch done) {
+            if(!claimed.compareAndSet(index, 0, 1))
+                return;
+            try {
+                runTimed(index, worker);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void runTimed(int index, ThrowingIntConsumer<? extends E> worker) {
+            WorkerStats stats = workerStats(index);
+            if(stats == null) {
+                runNested(() -> worker.accept(index));
+                return;
+            }
+            long start = System.nanoTime();
+            runNested(() -> worker.accept(index));
+            stats.busyNanos = System.nanoTime() - start;
         }
     }
 
@@ -1068,7 +3526,14 @@ public final class Parallel {
             super(loop, body);
             start = loop.start;
             increment = loop.increment;
-            count = (loop.stop - start) / increment;
+            count = loop.count();
+        }
+
+        public AbstractForExecution(For loop, Supplier<? extends ThrowingLongPredicate<? extends E>> workerBodies) {
+            super(loop, workerBodies);
+            start = loop.start;
+            increment = loop.increment;
+            count = loop.count();
         }
 
         @Override
@@ -1077,14 +3542,24 @@ public final class Parallel {
         }
 
         @Override
-        public boolean execute() throws E {
+        protected ThrowingLongPredicate<? extends E> counting(ThrowingLongPredicate<? extends E> body, WorkerStats stats) {
+            return i -> {
+                stats.iterations++;
+                return body.test(i);
+            };
+        }
+
+        @Override
+        protected boolean executeLoop() throws E {
             if(count <= 0)
                 return false;
 
             if(numThreads == 1) {
                 // Single-threaded -> use regular for loop
+                initStats(1);
+                ThrowingLongPredicate<? extends E> worker = workerBody(0);
                 for(long i=0; i<count; i++)
-                    if(body.test(start + i * increment))
+                    if(worker.test(start + i * increment))
                         return true;
                 return false;
             }
@@ -1098,11 +3573,23 @@ public final class Parallel {
         }
 
         protected abstract void runWorkers();
+
+        /**
+         * Executes the given iteration using the shared loop body, unless the loop is already done.
+         *
+         * @param i The index of the iteration to execute
+         * @return Whether the loop should stop
+         */
+        protected boolean sharedStep(long i) {
+            if(!stop && exceptions.hasNone() && !runNested(() -> {
+                if(body.test(start + increment * i))
+                    stop = true;
+            })) stop = true;
+            return stop;
+        }
     }
 
-    private static final class ForExecution<E extends Throwable>
-            extends AbstractForExecution<E>
-            implements ThrowingRunnable<E> {
+    private static final class ForExecution<E extends Throwable> extends AbstractForExecution<E> {
 
         // Somehow explicit locks are way faster under heavy load (that is, many iterations
         // where the body is very short). Atomic may be faster under lower loads, but I guess
@@ -1116,27 +3603,40 @@ public final class Parallel {
             super(loop, body);
         }
 
+        public ForExecution(For loop, Supplier<? extends ThrowingLongPredicate<? extends E>> workerBodies) {
+            super(loop, workerBodies);
+        }
+
         @Override
         protected void runWorkers() {
-            if(numThreads <= 0 || numThreads == commonThreadCount()) {
+            if(useParallelStream()) {
                 //noinspection ResultOfMethodCallIgnored
-                LongStream.range(0, count).parallel().anyMatch(i -> stop || exceptions.hasAny() || (stop |= !exceptions.tryRun(() -> body.test(start + i * increment))));
+                LongStream.range(0, count).parallel().anyMatch(this::sharedStep);
             }
-            else runWorkers(this);
+            else runWorkers(workerCount(), this::worker);
         }
 
-        @Override
-        public void run() throws E {
-            // From ThrowingRunnable<E>, the workload of a worker thread
+        private void worker(int id) throws E {
+            ThrowingLongPredicate<? extends E> worker = workerBody(id);
+            WorkerStats stats = workerStats(id);
             while(!stop && exceptions.hasNone()) {
 
 //                long i = this.i.getAndIncrement();
 
-                lock.lock();
+                if(stats != null) {
+                    long t = System.nanoTime();
+                    lock.lock();
+                    stats.lockWaitNanos += System.nanoTime() - t;
+                }
+                else lock.lock();
                 long i = this.i++;
                 lock.unlock();
 
-                if(i >= count || body.test(start + increment * i))
+                if(i >= count)
+                    return;
+                if(stats != null)
+                    stats.chunks++;
+                if(worker.test(start + increment * i))
                     stop = true;
             }
         }
@@ -1150,55 +3650,30 @@ public final class Parallel {
             super(loop, body);
         }
 
+        public BalancedForExecution(For loop, Supplier<? extends ThrowingLongPredicate<? extends E>> workerBodies) {
+            super(loop, workerBodies);
+        }
+
         @Override
         protected void runWorkers() {
-            int common = commonThreadCount();
-
-            chunkCount = (int) Math.min(numThreads <= 0 ? common : numThreads, count);
+            chunkCount = (int) Math.min(workerCount(), count);
 
-            if(chunkCount == common) {
+            if(chunkCount == commonThreadCount() && useParallelStream()) {
                 // Use stream API with anyMatch() to short-circuit if a result was found or an exception was thrown
                 //noinspection ResultOfMethodCallIgnored
-                LongStream.range(0, count).parallel().anyMatch(i -> stop || exceptions.hasAny() || (stop |= !exceptions.tryRun(() -> body.test(start + increment * i))));
-            }
-            else if(chunkCount < common) {
-                // Just use common pool
-                IntStream.range(0, chunkCount).parallel().forEach(chunk -> exceptions.tryRun(() -> chunkWorker(chunk)));
-            }
-            else {
-                IntWrapper done = new IntWrapper();
-
-                // Spawn additional worker threads, but also use common thread pool
-                for(int j = 0; j < numThreads - common; j++) {
-                    // Here we always need to spawn all threads, because each chunk is assigned to a specific thread only
-                    int chunk = j;
-                    new Thread(() -> {
-                        exceptions.tryRun(() -> chunkWorker(chunk));
-                        synchronized(done) {
-                            done.value++;
-                            done.notifyAll();
-                        }
-                    }, "Parallel."+name()+"() worker thread "+(j+1)).start();
-                }
-
-                // Use common thread pool for remaining workers
-                IntStream.range(0, common).parallel().forEach(i -> exceptions.tryRun(() -> chunkWorker(numThreads - common + i)));
-
-                // Wait for all threads to finish
-                synchronized(done) {
-                    while(done.value < numThreads - common) try {
-                        done.wait();
-                    } catch(InterruptedException e) {
-                        throw Utils.rethrow(e);
-                    }
-                }
+                LongStream.range(0, count).parallel().anyMatch(this::sharedStep);
             }
+            else runWorkers(chunkCount, this::chunkWorker);
         }
 
         private void chunkWorker(int chunk) throws E {
+            ThrowingLongPredicate<? extends E> worker = workerBody(chunk);
+            WorkerStats stats = workerStats(chunk);
+            if(stats != null)
+                stats.chunks = 1;
             long end = chunkEnd(chunk);
             for(long i = chunkStart(chunk); i<end && !stop && exceptions.hasNone(); i++) {
-                if(body.test(start + increment * i)) {
+                if(worker.test(start + increment * i)) {
                     stop = true;
                     return;
                 }
@@ -1218,11 +3693,232 @@ public final class Parallel {
         }
     }
 
+    private static final class ScheduledForExecution<E extends Throwable> extends AbstractForExecution<E> {
+
+        private final Schedule schedule;
+        private final AtomicLong next = new AtomicLong();
+        private int workers;
+        private long chunkCount;
+
+        public ScheduledForExecution(For loop, ThrowingLongPredicate<? extends E> body) {
+            super(loop, body);
+            schedule = loop.schedule;
+        }
+
+        public ScheduledForExecution(For loop, Supplier<? extends ThrowingLongPredicate<? extends E>> workerBodies) {
+            super(loop, workerBodies);
+            schedule = loop.schedule;
+        }
+
+        @Override
+        protected void runWorkers() {
+            chunkCount = schedule.kind == Schedule.Kind.GUIDED ? count : (count - 1) / schedule.chunkSize + 1;
+            workers = (int) Math.min(workerCount(), chunkCount);
+            if(schedule.kind == Schedule.Kind.STATIC)
+                runWorkers(workers, this::staticWorker);
+            else runWorkers(workers, this::dynamicWorker);
+        }
+
+        private void staticWorker(int id) throws E {
+            ThrowingLongPredicate<? extends E> worker = workerBody(id);
+            WorkerStats stats = workerStats(id);
+            for(long chunk = id; chunk < chunkCount; chunk += workers) {
+                if(stats != null)
+                    stats.chunks++;
+                long from = chunk * schedule.chunkSize;
+                if(runChunk(worker, from, from + Math.min(schedule.chunkSize, count - from)))
+                    return;
+            }
+        }
+
+        private void dynamicWorker(int id) throws E {
+            ThrowingLongPredicate<? extends E> worker = workerBody(id);
+            WorkerStats stats = workerStats(id);
+            while(!stop && exceptions.hasNone()) {
+                long t = stats != null ? System.nanoTime() : 0;
+                long from, size;
+                do {
+                    from = next.get();
+                    if(from >= count)
+                        return;
+                    size = chunkSize(count - from);
+                } while(!next.compareAndSet(from, from + size));
+                if(stats != null) {
+                    stats.lockWaitNanos += System.nanoTime() - t;
+                    stats.chunks++;
+                }
+
+                if(runChunk(worker, from, from + size))
+                    return;
+            }
+        }
+
+        private long chunkSize(long remaining) {
+            long size = schedule.chunkSize;
+            if(schedule.kind == Schedule.Kind.GUIDED)
+                size = Math.max(size, remaining / workers);
+            return Math.min(size, remaining);
+        }
+
+        /**
+         * Executes the iterations in the given range, and returns whether the loop should stop.
+         */
+        private boolean runChunk(ThrowingLongPredicate<? extends E> worker, long from, long to) throws E {
+            for(long i=from; i<to; i++) {
+                if(stop || exceptions.hasAny())
+                    return true;
+                if(worker.test(start + increment * i))
+                    return stop = true;
+            }
+            return false;
+        }
+    }
+
+    private static final class StealingForExecution<E extends Throwable> extends AbstractForExecution<E> {
+
+        /**
+         * A worker claims <code>1 / 2^CHUNK_SHIFT</code> of the iterations remaining in its own
+         * range at once. This keeps the number of lock acquisitions logarithmic in the size of the
+         * range, while leaving enough iterations behind for other workers to steal.
+         */
+        private static final int CHUNK_SHIFT = 3;
+
+        private WorkRange[] ranges;
+
+        public StealingForExecution(For loop, ThrowingLongPredicate<? extends E> body) {
+            super(loop, body);
+        }
+
+        public StealingForExecution(For loop, Supplier<? extends ThrowingLongPredicate<? extends E>> workerBodies) {
+            super(loop, workerBodies);
+        }
+
+        @Override
+        protected void runWorkers() {
+            // One range per worker, any ranges of workers which did not get started will simply be stolen
+            int workers = workerCount();
+            ranges = new WorkRange[workers];
+            long size = count / workers, extra = count % workers;
+            for(int i=0; i<workers; i++) {
+                long from = size * i + Math.min(i, extra);
+                ranges[i] = new WorkRange(from, from + size + (i < extra ? 1 : 0));
+            }
+            runWorkers(workers, this::worker);
+        }
+
+        private void worker(int id) throws E {
+            WorkRange own = ranges[id];
+            ThrowingLongPredicate<? extends E> worker = workerBody(id);
+            WorkerStats stats = workerStats(id);
+            while(!stop && exceptions.hasNone()) {
+                if(stats == null) {
+                    if(!own.claim() && !steal(id, own))
+                        return;
+                }
+                else {
+                    long t = System.nanoTime();
+                    boolean claimed = own.claim() || steal(id, own);
+                    stats.lockWaitNanos += System.nanoTime() - t;
+                    if(!claimed)
+                        return;
+                    stats.chunks++;
+                }
+                for(long i = own.from; i < own.to && !stop && exceptions.hasNone(); i++) {
+                    if(worker.test(start + increment * i)) {
+                        stop = true;
+                        return;
+                    }
+                }
+            }
+        }
+
+        private boolean steal(int thief, WorkRange own) {
+            while(!stop && exceptions.hasNone()) {
+                // Unsynchronized scan, only used as a hint which range to lock
+                WorkRange victim = null;
+                long most = 0;
+                for(int j=1; j<ranges.length; j++) {
+                    WorkRange range = ranges[(thief + j) % ranges.length];
+                    long remaining = range.remaining();
+                    if(remaining > most) {
+                        most = remaining;
+                        victim = range;
+                    }
+                }
+                if(victim == null)
+                    return false;
+                if(victim.splitInto(own))
+                    return own.claim();
+            }
+            return false;
+        }
+
+        private static final class WorkRange {
+
+            private final Lock lock = new ReentrantLock();
+            /**
+             * The not yet claimed iterations <code>[next, end)</code>, only modified while holding the lock.
+             */
+            private volatile long next, end;
+            /**
+             * The last chunk <code>[from, to)</code> claimed by the owner, only accessed by the owning worker.
+             */
+            private long from, to;
+
+            WorkRange(long next, long end) {
+                this.next = next;
+                this.end = end;
+            }
+
+            long remaining() {
+                return end - next;
+            }
+
+            boolean claim() {
+                lock.lock();
+                try {
+                    long remaining = end - next;
+                    if(remaining <= 0)
+                        return false;
+                    from = next;
+                    to = next = from + Math.max(1, remaining >> CHUNK_SHIFT);
+                    return true;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            boolean splitInto(WorkRange thief) {
+                long from, to;
+                lock.lock();
+                try {
+                    long remaining = end - next;
+                    if(remaining <= 0)
+                        return false;
+                    from = next + remaining / 2;
+                    to = end;
+                    end = from;
+                } finally {
+                    lock.unlock();
+                }
+                // Never hold two locks at once to avoid deadlocks between concurrent thieves
+                thief.lock.lock();
+                try {
+                    thief.next = from;
+                    thief.end = to;
+                } finally {
+                    thief.lock.unlock();
+                }
+                return true;
+            }
+        }
+    }
+
     private static final class ForeachExecution<T, E extends Throwable>
-            extends LoopExecution<E, ThrowingPredicate<? super T, ? extends E>>
-            implements ThrowingRunnable<E> {
+            extends LoopExecution<E, ThrowingPredicate<? super T, ? extends E>> {
 
         private final Foreach.Source<? extends T> source;
+        private final int batchSize;
         private Iterator<? extends T> it;
         private Lock itLock;
 
@@ -1230,6 +3926,13 @@ public final class Parallel {
         public ForeachExecution(Foreach<T> loop, ThrowingPredicate<? super T, ? extends E> body) {
             super(loop, body);
             source = loop.source;
+            batchSize = loop.batchSize;
+        }
+
+        public ForeachExecution(Foreach<T> loop, Supplier<? extends ThrowingPredicate<? super T, ? extends E>> workerBodies) {
+            super(loop, workerBodies);
+            source = loop.source;
+            batchSize = loop.batchSize;
         }
 
         @Override
@@ -1238,18 +3941,28 @@ public final class Parallel {
         }
 
         @Override
-        public boolean execute() throws E {
+        protected ThrowingPredicate<? super T, ? extends E> counting(ThrowingPredicate<? super T, ? extends E> body, WorkerStats stats) {
+            return t -> {
+                stats.iterations++;
+                return body.test(t);
+            };
+        }
+
+        @Override
+        protected boolean executeLoop() throws E {
 
             if(numThreads == 1) {
+                initStats(1);
+                ThrowingPredicate<? super T, ? extends E> worker = workerBody(0);
                 for(T t : source)
-                    if(body.test(t))
+                    if(worker.test(t))
                         return true;
                 return false;
             }
 
             exceptions = new ExceptionContainer<>(STACK_TRACE_FILTER);
 
-            if(numThreads <= 0 || numThreads == commonThreadCount()) {
+            if(useParallelStream()) {
                 // Use anyMatch() to short-circuit if value is found or exception is thrown.
                 // The resulting value is identical to the already set value of stop
 
@@ -1257,8 +3970,11 @@ public final class Parallel {
                 source.stream().parallel().anyMatch(element -> {
                     if(exceptions.hasAny() || stop)
                         return stop = true;
-                    //noinspection ConstantValue
-                    return stop |= !exceptions.tryRun(() -> stop |= body.test(element));
+                    if(!runNested(() -> {
+                        if(body.test(element))
+                            stop = true;
+                    })) stop = true;
+                    return stop;
                 });
             } else {
                 it = source.iterator();
@@ -1266,37 +3982,102 @@ public final class Parallel {
                     return false;
                 itLock = new ReentrantLock();
 
-                runWorkers(this);
+                runWorkers(workerCount(), this::worker);
             }
 
             exceptions.throwIfAny();
             return stop;
         }
 
-        @Override
-        public void run() throws E {
-            // From ThrowingRunnable<E>, represents a single loop step
+        private void worker(int id) throws E {
+            ThrowingPredicate<? super T, ? extends E> worker = workerBody(id);
+            WorkerStats stats = workerStats(id);
+            Object[] batch = new Object[batchSize];
             while(!stop && exceptions.hasNone()) {
-                T element;
+                int size = 0;
 
-                itLock.lock();
+                if(stats != null) {
+                    long t = System.nanoTime();
+                    itLock.lock();
+                    stats.lockWaitNanos += System.nanoTime() - t;
+                }
+                else itLock.lock();
                 try {
-                    if(!it.hasNext())
-                        return;
-                    element = it.next();
+                    while(size < batch.length && it.hasNext())
+                        batch[size++] = it.next();
                 } finally {
                     itLock.unlock();
                 }
-
-                if(stop || exceptions.hasAny() || body.test(element)) {
-                    stop = true;
+                if(size == 0)
                     return;
+                if(stats != null)
+                    stats.chunks++;
+
+                for(int i=0; i<size; i++) {
+                    @SuppressWarnings("unchecked")
+                    T element = (T) batch[i];
+                    if(stop || exceptions.hasAny() || worker.test(element)) {
+                        stop = true;
+                        return;
+                    }
                 }
             }
         }
     }
 
 
+    /**
+     * Adds the given partial result of a worker to the given list of partial results.
+     *
+     * @param partials The partial results of all workers, will be synchronized on
+     * @param partial The partial result to add
+     * @return The partial result passed
+     */
+    private static <S> S register(List<? super S> partials, S partial) {
+        synchronized(partials) {
+            partials.add(partial);
+        }
+        return partial;
+    }
+
+    private static <T> T min(List<? extends Wrapper<? extends T>> partials, Comparator<? super T> comparator) {
+        T min = null;
+        for(Wrapper<? extends T> partial : partials)
+            if(partial.value != null && (min == null || comparator.compare(partial.value, min) < 0))
+                min = partial.value;
+        return min;
+    }
+
+    private static <R> R combine(List<R> partials, Supplier<? extends R> supplier, BiConsumer<? super R, ? super R> combiner) {
+        if(partials.isEmpty())
+            return supplier.get();
+        R result = partials.get(0);
+        for(int i=1; i<partials.size(); i++)
+            combiner.accept(result, partials.get(i));
+        return result;
+    }
+
+    /**
+     * Lazily created pool of daemon worker threads for loops that use more threads than the
+     * common pool provides. Threads are created as needed, reused across loops and terminate
+     * after having been idle for some time, so the pool grows and shrinks with the demand.
+     */
+    private static final class WorkerPool {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+                0, Integer.MAX_VALUE,
+                30, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "Parallel worker thread " + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
     private static int commonThreadCount() {
         // Normally, these should be identical. We need +1 because the common pool has one
         // thread less than we have processors (presumably to compensate for the calling thread
@@ -0,0 +1,133 @@
+package de.rccookie.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import de.rccookie.util.function.Computation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+/**
+ * Deduplicates concurrent computations of the same key. While a computation for a key
+ * is running, every call to {@link #get(Object, Computation)} with that key returns the
+ * same future instead of starting another computation, such that many threads requesting
+ * the same expensive resource at once only cause a single computation.
+ *
+ * <p>Once the computation is done, the key is forgotten, either immediately or after a
+ * configurable grace period, during which requests for the key still receive the already
+ * computed result. Failed computations are always forgotten immediately, so that the next
+ * request retries the computation.</p>
+ *
+ * <p>Note that all callers share the same future, thus cancelling it cancels the
+ * computation for all of them.</p>
+ *
+ * @param <K> The key type
+ * @param <V> The result type
+ */
+public class SingleFlight<K,V> {
+
+    private final Map<K, OnDemandFutureImpl<V>> flights = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private final long gracePeriodNanos;
+
+    /**
+     * Creates a new single-flight group which runs computations on {@link ThreadedFutureImpl#DEFAULT_EXECUTOR}
+     * and forgets keys as soon as their computation is done.
+     */
+    public SingleFlight() {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new single-flight group which runs computations on {@link ThreadedFutureImpl#DEFAULT_EXECUTOR}.
+     *
+     * @param gracePeriod The time for which a successfully computed result is still returned
+     *                    for its key after its computation is done
+     * @param unit The unit of the grace period
+     */
+    public SingleFlight(@Range(from = 0) long gracePeriod, @NotNull TimeUnit unit) {
+        this(ThreadedFutureImpl.DEFAULT_EXECUTOR, gracePeriod, unit);
+    }
+
+    /**
+     * Creates a new single-flight group.
+     *
+     * @param executor The executor to run the computations on
+     * @param gracePeriod The time for which a successfully computed result is still returned
+     *                    for its key after its computation is done
+     * @param unit The unit of the grace period
+     */
+    public SingleFlight(@NotNull Executor executor, @Range(from = 0) long gracePeriod, @NotNull TimeUnit unit) {
+        this.executor = Arguments.checkNull(executor, "executor");
+        this.gracePeriodNanos = Arguments.checkNull(unit, "unit").toNanos(Arguments.checkRange(gracePeriod, 0L, null));
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight" + flights.keySet();
+    }
+
+    /**
+     * Returns the future of the computation for the given key. If no computation for that
+     * key is currently running (or within its grace period), the given computation is started,
+     * otherwise the given computation is ignored and the future of the running computation
+     * is returned.
+     *
+     * @param key The key to get the result for
+     * @param computation The computation to run if there is no computation for the key yet
+     * @return The future of the computation for the key
+     */
+    @NotNull
+    public Future<V> get(K key, @NotNull Computation<? extends V> computation) {
+        Arguments.checkNull(computation, "computation");
+        OnDemandFutureImpl<V> flight = flights.get(key);
+        if(flight != null)
+            return flight;
+
+        OnDemandFutureImpl<V> candidate = new OnDemandFutureImpl<>(computation::compute, executor);
+        flight = flights.putIfAbsent(key, candidate);
+        if(flight != null)
+            return flight;
+
+        // Not computing in putIfAbsent because the computation may complete synchronously
+        candidate.whenDone(() -> land(key, candidate));
+        try {
+            return candidate.startComputation();
+        } catch(RuntimeException e) {
+            // E.g. rejected by the executor. Fail callers which already got the candidate,
+            // and don't keep it as flight that will never complete.
+            flights.remove(key, candidate);
+            candidate.tryFail(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets the computation for the given key, if any, such that the next request for that
+     * key starts a new computation. A running computation is not cancelled.
+     *
+     * @param key The key to forget
+     * @return Whether there was a computation for the key
+     */
+    public boolean forget(K key) {
+        return flights.remove(key) != null;
+    }
+
+    /**
+     * Returns the number of keys that currently have a running computation, or are within
+     * their grace period.
+     *
+     * @return The number of keys with a computation
+     */
+    public int size() {
+        return flights.size();
+    }
+
+    private void land(K key, OnDemandFutureImpl<V> flight) {
+        if(gracePeriodNanos == 0 || flight.isCanceled())
+            flights.remove(key, flight);
+        else FutureTimer.schedule(() -> flights.remove(key, flight), gracePeriodNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,174 @@
+package de.rccookie.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A fixed-size arena outside of the Java heap, storing encoded values evicted from a
+ * {@link Cache}. Records are appended to the arena; when it is full, the live records are
+ * compacted to the start of the arena, and if that does not free enough space, the oldest
+ * records are dropped. The index of the records is kept on the heap.
+ *
+ * @param <K> The key type
+ */
+final class SpillStore<K> {
+
+    private final ByteBuffer arena;
+    /**
+     * The slots of all records in insertion order, which is also the order of their
+     * offsets in the arena.
+     */
+    private final LinkedHashMap<K,Slot> index = new LinkedHashMap<>();
+    private int position = 0;
+    private long live = 0;
+
+    private SpillStore(ByteBuffer arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Creates a store backed by a direct byte buffer.
+     *
+     * @param capacity The size of the arena in bytes
+     * @return A new spill store
+     */
+    static <K> SpillStore<K> offHeap(int capacity) {
+        return new SpillStore<>(ByteBuffer.allocateDirect(capacity));
+    }
+
+    /**
+     * Creates a store backed by a memory-mapped file. The contents of the file are
+     * overwritten.
+     *
+     * @param file The file to map
+     * @param capacity The size of the arena in bytes
+     * @return A new spill store
+     */
+    static <K> SpillStore<K> mapped(Path file, int capacity) {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return new SpillStore<>(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SpillStore[" + index.size() + " records, " + live + "/" + arena.capacity() + " bytes]";
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Stores the given record, replacing any record for the same key. Records larger than
+     * the arena are not stored.
+     *
+     * @param key The key of the record
+     * @param data The encoded value
+     * @param writeTime The time the value was written to the cache, in nanoseconds
+     * @param accessTime The time the value was last accessed in the cache, in nanoseconds
+     */
+    synchronized void put(K key, byte[] data, long writeTime, long accessTime) {
+        remove(key);
+        if(data.length > arena.capacity()) return;
+        if(position + data.length > arena.capacity()) {
+            for(Iterator<Slot> it = index.values().iterator(); live + data.length > arena.capacity(); ) {
+                live -= it.next().length;
+                it.remove();
+            }
+            compact();
+        }
+        ByteBuffer buffer = arena.duplicate();
+        buffer.position(position);
+        buffer.put(data);
+        index.put(key, new Slot(position, data.length, writeTime, accessTime));
+        position += data.length;
+        live += data.length;
+    }
+
+    /**
+     * Removes and returns the record for the given key.
+     *
+     * @param key The key of the record
+     * @return The record, or <code>null</code> if there is none
+     */
+    synchronized Record remove(Object key) {
+        Slot slot = index.remove(key);
+        if(slot == null) return null;
+        byte[] data = new byte[slot.length];
+        ByteBuffer buffer = arena.duplicate();
+        buffer.position(slot.offset);
+        buffer.get(data);
+        live -= slot.length;
+        if(index.isEmpty())
+            position = 0;
+        return new Record(data, slot.writeTime, slot.accessTime);
+    }
+
+    synchronized void clear() {
+        index.clear();
+        position = 0;
+        live = 0;
+    }
+
+    /**
+     * Moves all live records to the start of the arena, keeping their order.
+     */
+    private void compact() {
+        int target = 0;
+        byte[] copy = null;
+        for(Slot slot : index.values()) {
+            if(slot.offset != target) {
+                if(copy == null || copy.length < slot.length)
+                    copy = new byte[slot.length];
+                ByteBuffer buffer = arena.duplicate();
+                buffer.position(slot.offset);
+                buffer.get(copy, 0, slot.length);
+                buffer.position(target);
+                buffer.put(copy, 0, slot.length);
+                slot.offset = target;
+            }
+            target += slot.length;
+        }
+        position = target;
+    }
+
+
+    private static final class Slot {
+        int offset;
+        final int length;
+        final long writeTime;
+        final long accessTime;
+
+        Slot(int offset, int length, long writeTime, long accessTime) {
+            this.offset = offset;
+            this.length = length;
+            this.writeTime = writeTime;
+            this.accessTime = accessTime;
+        }
+    }
+
+    /**
+     * A record read from the store.
+     */
+    static final class Record {
+        final byte[] data;
+        final long writeTime;
+        final long accessTime;
+
+        Record(byte[] data, long writeTime, long accessTime) {
+            this.data = data;
+            this.writeTime = writeTime;
+            this.accessTime = accessTime;
+        }
+    }
+}
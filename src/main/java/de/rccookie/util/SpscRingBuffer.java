@@ -0,0 +1,213 @@
+package de.rccookie.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+/**
+ * A wait-free queue for handing elements from exactly one producer thread to exactly one
+ * consumer thread. Like {@link RingBuffer}, the elements are stored in an array with a
+ * power-of-two length, indexed by ever increasing positions.
+ *
+ * <p>A bounded buffer rejects elements when it is full. A growable buffer instead links a
+ * new buffer of twice the size, up to the given maximum capacity; the consumer follows the
+ * link once it has consumed all elements of the old buffer. The positions of producer and
+ * consumer are kept in separate cache lines, and neither side ever waits for the other.</p>
+ *
+ * <p>{@link #offer(Object)} must only be called by a single thread at a time, and so must
+ * {@link #poll()}, {@link #peek()} and {@link #drainTo(Consumer, int)}. <code>null</code>
+ * elements are not supported.</p>
+ *
+ * @param <T> Content type
+ * @see MpscRingBuffer
+ */
+public class SpscRingBuffer<T> {
+
+    /**
+     * Marker written into the old buffer at the position where the consumer has to continue
+     * in the next buffer.
+     */
+    private static final Object JUMP = new Object();
+
+    private final int maxCapacity;
+    private final PaddedSequence producerIndex = new PaddedSequence();
+    private final PaddedSequence consumerIndex = new PaddedSequence();
+    /**
+     * The buffer the producer writes to, only accessed by the producer. Each buffer has one
+     * extra element at the end for the link to the next buffer.
+     */
+    private AtomicReferenceArray<Object> producerBuffer;
+    /**
+     * The buffer the consumer reads from, only accessed by the consumer.
+     */
+    private AtomicReferenceArray<Object> consumerBuffer;
+
+    /**
+     * Creates a new bounded buffer.
+     *
+     * @param capacity The minimum capacity of the buffer, will be rounded up to a power of two
+     */
+    public SpscRingBuffer(@Range(from = 1, to = 1 << 30) int capacity) {
+        this(capacity, capacity);
+    }
+
+    /**
+     * Creates a new growable buffer.
+     *
+     * @param initialCapacity The minimum initial capacity of the buffer, will be rounded up
+     *                        to a power of two
+     * @param maxCapacity The minimum capacity the buffer may grow to, will be rounded up to
+     *                    a power of two
+     */
+    public SpscRingBuffer(@Range(from = 1, to = 1 << 30) int initialCapacity, @Range(from = 1, to = 1 << 30) int maxCapacity) {
+        Arguments.checkRange(initialCapacity, 1, (1 << 30) + 1);
+        Arguments.checkRange(maxCapacity, initialCapacity, (1 << 30) + 1);
+        this.maxCapacity = MpscRingBuffer.powerOfTwo(maxCapacity);
+        producerBuffer = consumerBuffer = new AtomicReferenceArray<>(MpscRingBuffer.powerOfTwo(initialCapacity) + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "SpscRingBuffer[" + size() + "/" + maxCapacity + "]";
+    }
+
+    /**
+     * Appends the given element, if the buffer is not full. Must only be called by the
+     * producer thread.
+     *
+     * @param t The element to append
+     * @return Whether the element was added, <code>false</code> if the buffer is full
+     */
+    public boolean offer(@NotNull T t) {
+        Arguments.checkNull(t, "t");
+        AtomicReferenceArray<Object> buffer = producerBuffer;
+        long p = producerIndex.get();
+        int capacity = buffer.length() - 1;
+        int offset = (int) p & (capacity - 1);
+        if(capacity < maxCapacity) {
+            // A buffer that can still grow never gets full, such that the slot for the jump
+            // marker is always free. The consumer may have freed the next slot in the meantime,
+            // which only causes an early resize.
+            if(buffer.getAcquire((int) (p + 1) & (capacity - 1)) != null) {
+                resize(buffer, p, offset, t);
+                return true;
+            }
+        }
+        else if(buffer.getAcquire(offset) != null)
+            return false;
+        buffer.setRelease(offset, t);
+        producerIndex.setRelease(p + 1);
+        return true;
+    }
+
+    private void resize(AtomicReferenceArray<Object> buffer, long p, int offset, T t) {
+        int capacity = (buffer.length() - 1) << 1;
+        AtomicReferenceArray<Object> next = new AtomicReferenceArray<>(capacity + 1);
+        producerBuffer = next;
+        next.setPlain((int) p & (capacity - 1), t);
+        buffer.setPlain(buffer.length() - 1, next);
+        // Publishes the writes above to the consumer
+        buffer.setRelease(offset, JUMP);
+        producerIndex.setRelease(p + 1);
+    }
+
+    /**
+     * Removes and returns the oldest element. Must only be called by the consumer thread.
+     *
+     * @return The removed element, or <code>null</code> if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T poll() {
+        AtomicReferenceArray<Object> buffer = consumerBuffer;
+        long c = consumerIndex.get();
+        int offset = (int) c & (buffer.length() - 2);
+        Object t = buffer.getAcquire(offset);
+        if(t == null)
+            return null;
+        if(t == JUMP) {
+            buffer = consumerBuffer = next(buffer);
+            offset = (int) c & (buffer.length() - 2);
+            t = buffer.getPlain(offset);
+        }
+        buffer.setRelease(offset, null);
+        consumerIndex.setRelease(c + 1);
+        return (T) t;
+    }
+
+    /**
+     * Returns, but does not remove the oldest element. Must only be called by the consumer
+     * thread.
+     *
+     * @return The oldest element, or <code>null</code> if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public T peek() {
+        AtomicReferenceArray<Object> buffer = consumerBuffer;
+        long c = consumerIndex.get();
+        Object t = buffer.getAcquire((int) c & (buffer.length() - 2));
+        if(t == JUMP) {
+            buffer = consumerBuffer = next(buffer);
+            t = buffer.getPlain((int) c & (buffer.length() - 2));
+        }
+        return (T) t;
+    }
+
+    /**
+     * Removes up to the given number of elements and passes them to the given consumer, in
+     * the order they were added. Must only be called by the consumer thread.
+     *
+     * @param consumer The consumer to pass the elements to
+     * @param maxCount The maximum number of elements to remove
+     * @return The number of removed elements
+     */
+    public int drainTo(@NotNull Consumer<? super T> consumer, @Range(from = 0) int maxCount) {
+        Arguments.checkNull(consumer, "consumer");
+        Arguments.checkRange(maxCount, 0, null);
+        int count = 0;
+        T t;
+        while(count < maxCount && (t = poll()) != null) {
+            consumer.accept(t);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of elements in the buffer. If the buffer is used concurrently,
+     * the result is only an estimate.
+     *
+     * @return The current size of the buffer
+     */
+    public int size() {
+        return MpscRingBuffer.size(producerIndex, 0, consumerIndex);
+    }
+
+    /**
+     * Returns whether the buffer is empty. If the buffer is used concurrently, the result
+     * is only an estimate.
+     *
+     * @return Whether the buffer contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    /**
+     * Returns the maximum capacity of the buffer.
+     *
+     * @return The maximum number of elements the buffer can hold
+     */
+    public int capacity() {
+        return maxCapacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<Object> next(AtomicReferenceArray<Object> buffer) {
+        return (AtomicReferenceArray<Object>) buffer.getPlain(buffer.length() - 1);
+    }
+}
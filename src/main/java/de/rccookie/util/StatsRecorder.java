@@ -0,0 +1,128 @@
+package de.rccookie.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records the statistics of a {@link Cache} or {@link CachedSupplier}. All counters are
+ * striped, such that recording stays cheap when the cache is used by many threads at once.
+ * Recorders with a name are registered globally, see {@link CacheStats#all()}.
+ */
+final class StatsRecorder {
+
+    /**
+     * All named recorders, weakly referenced such that they disappear together with their
+     * cache. Guarded by the map itself.
+     */
+    private static final Map<String, List<WeakReference<StatsRecorder>>> NAMED = new LinkedHashMap<>();
+
+    @Nullable
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder[] loadLatencies = new LongAdder[CacheStats.BUCKET_COUNT];
+
+    /**
+     * Creates a new recorder, and registers it if it has a name.
+     *
+     * @param name The name of the cache, or <code>null</code>
+     */
+    StatsRecorder(@Nullable String name) {
+        this.name = name;
+        for(int i = 0; i < loadLatencies.length; i++)
+            loadLatencies[i] = new LongAdder();
+        if(name != null) {
+            synchronized(NAMED) {
+                NAMED.computeIfAbsent(name, n -> new ArrayList<>()).add(new WeakReference<>(this));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StatsRecorder" + (name != null ? "[" + name + "]" : "") + ": " + snapshot();
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Records a load that took the given time.
+     *
+     * @param nanos The duration of the load in nanoseconds
+     * @param success Whether a value was loaded, rather than the load throwing an exception
+     *                or returning <code>null</code>
+     */
+    void recordLoad(long nanos, boolean success) {
+        (success ? loadSuccesses : loadFailures).increment();
+        totalLoadTime.add(nanos);
+        loadLatencies[CacheStats.bucketOf(nanos)].increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Returns the current values of the counters. Since the counters are not read atomically,
+     * the snapshot may not be consistent if the cache is used concurrently.
+     *
+     * @return A snapshot of the statistics
+     */
+    CacheStats snapshot() {
+        long[] histogram = new long[loadLatencies.length];
+        for(int i = 0; i < histogram.length; i++)
+            histogram[i] = loadLatencies[i].sum();
+        return new CacheStats(
+                hits.sum(),
+                misses.sum(),
+                loadSuccesses.sum(),
+                loadFailures.sum(),
+                totalLoadTime.sum(),
+                evictions.sum(),
+                histogram
+        );
+    }
+
+    /**
+     * Returns the snapshots of all named recorders which are still in use, summed up per
+     * name.
+     *
+     * @return The statistics per cache name, in registration order of the names
+     */
+    static Map<String, CacheStats> snapshotAll() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        synchronized(NAMED) {
+            for(Iterator<Map.Entry<String, List<WeakReference<StatsRecorder>>>> it = NAMED.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<String, List<WeakReference<StatsRecorder>>> entry = it.next();
+                CacheStats sum = null;
+                for(Iterator<WeakReference<StatsRecorder>> refs = entry.getValue().iterator(); refs.hasNext();) {
+                    StatsRecorder recorder = refs.next().get();
+                    if(recorder == null)
+                        refs.remove();
+                    else sum = sum == null ? recorder.snapshot() : sum.plus(recorder.snapshot());
+                }
+                if(sum == null)
+                    it.remove();
+                else stats.put(entry.getKey(), sum);
+            }
+        }
+        return stats;
+    }
+}
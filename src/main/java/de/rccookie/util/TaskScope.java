@@ -0,0 +1,351 @@
+package de.rccookie.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+import de.rccookie.util.function.Computation;
+import org.jetbrains.annotations.Blocking;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+/**
+ * A scope which owns a group of subtasks, intended to be used in a try-with-resources
+ * statement:
+ * <pre>{@code
+ * try(TaskScope<Object> scope = new TaskScope<>()) {
+ *     Future<User> user = scope.fork(() -> loadUser(id));
+ *     Future<List<Order>> orders = scope.fork(() -> loadOrders(id));
+ *     scope.joinAll();
+ *     return new Page(user.get(), orders.get());
+ * }
+ * }</pre>
+ * If any subtask fails, all other subtasks of the scope which are not done yet get cancelled,
+ * and running subtasks get interrupted. The same happens when {@link #joinAny()} has
+ * received its result. At most the given maximum number of subtasks run at once, further
+ * subtasks are queued until a running subtask finishes. Queueing never blocks the forking
+ * thread.
+ *
+ * <p>Closing the scope cancels all subtasks which are not done yet, and waits until no
+ * subtask is running anymore.</p>
+ *
+ * @param <T> The common supertype of the results of the subtasks
+ */
+public class TaskScope<T> implements AutoCloseable {
+
+    private final Executor executor;
+    private final Semaphore permits;
+    private final Queue<Subtask<?>> queue = new ConcurrentLinkedQueue<>();
+
+    // All following fields are guarded by 'this'
+    private final List<Subtask<? extends T>> subtasks = new ArrayList<>();
+    /**
+     * Number of forked subtasks whose future is not done yet.
+     */
+    private int pending = 0;
+    /**
+     * Number of subtasks whose computation is currently running on a thread.
+     */
+    private int active = 0;
+    private Exception failure = null;
+    private boolean failed = false;
+    private T result = null;
+    private boolean succeeded = false;
+    private boolean awaitingAny = false;
+    private boolean shutdown = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a new task scope which runs subtasks on {@link ThreadedFutureImpl#DEFAULT_EXECUTOR}
+     * without limiting the number of subtasks running at once.
+     */
+    public TaskScope() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new task scope which runs subtasks on {@link ThreadedFutureImpl#DEFAULT_EXECUTOR}.
+     *
+     * @param maxConcurrency The maximum number of subtasks to run at once
+     */
+    public TaskScope(@Range(from = 1) int maxConcurrency) {
+        this(ThreadedFutureImpl.DEFAULT_EXECUTOR, maxConcurrency);
+    }
+
+    /**
+     * Creates a new task scope.
+     *
+     * @param executor The executor to run the subtasks on
+     * @param maxConcurrency The maximum number of subtasks to run at once
+     */
+    public TaskScope(@NotNull Executor executor, @Range(from = 1) int maxConcurrency) {
+        this.executor = Arguments.checkNull(executor, "executor");
+        this.permits = new Semaphore(Arguments.checkRange(maxConcurrency, 1, null));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TaskScope[" + subtasks.size() + " subtasks, " + pending + " pending, " + active + " running" + (shutdown ? ", shut down" : "") + "]";
+    }
+
+    /**
+     * Starts the given computation as a subtask of this scope. If the maximum number of
+     * subtasks are already running, the computation is queued. If the scope has already
+     * been shut down because of a failure or a result of {@link #joinAny()}, the returned
+     * future is cancelled immediately.
+     *
+     * @param computation The computation to run
+     * @param <U> The result type of the computation
+     * @return A future for the result of the computation
+     * @throws IllegalStateException If the scope has already been closed
+     */
+    @NotNull
+    public <U extends T> Future<U> fork(@NotNull Computation<U> computation) throws IllegalStateException {
+        Arguments.checkNull(computation, "computation");
+        Subtask<U> subtask = new Subtask<>(computation);
+        boolean cancel;
+        synchronized(this) {
+            if(closed) throw new IllegalStateException("Task scope has already been closed");
+            subtasks.add(subtask);
+            pending++;
+            cancel = shutdown;
+        }
+        // Failures are handled by the scope, so registered as handler rather than using whenDone()
+        subtask.future.then(() -> done(subtask)).except(() -> done(subtask));
+        if(cancel)
+            subtask.future.cancel();
+        else {
+            queue.add(subtask);
+            drain();
+        }
+        return subtask.future;
+    }
+
+    /**
+     * Waits until all subtasks are done, and returns their results in the order the
+     * subtasks were forked. If a subtask fails, all other subtasks get cancelled, and
+     * the failure is rethrown.
+     *
+     * @return The results of all subtasks
+     * @throws IllegalStateException If a subtask was cancelled
+     */
+    @Blocking
+    @NotNull
+    public List<T> joinAll() throws IllegalStateException {
+        await(() -> pending == 0);
+        synchronized(this) {
+            if(failed)
+                throw Utils.rethrow(failure);
+            List<T> results = new ArrayList<>(subtasks.size());
+            for(Subtask<? extends T> subtask : subtasks) {
+                if(subtask.future.isCanceled())
+                    throw new IllegalStateException("Subtask has been cancelled");
+                results.add(subtask.future.get());
+            }
+            return Collections.unmodifiableList(results);
+        }
+    }
+
+    /**
+     * Waits until any subtask completes successfully, cancels all other subtasks and returns
+     * the result. If a subtask fails before any subtask has succeeded, all other subtasks get
+     * cancelled, and the failure is rethrown.
+     *
+     * @return The result of the first subtask that completed successfully
+     * @throws IllegalStateException If no subtask has been forked, or all subtasks were cancelled
+     */
+    @Blocking
+    public T joinAny() throws IllegalStateException {
+        synchronized(this) {
+            awaitingAny = true;
+        }
+        await(() -> pending == 0 || succeeded || failed);
+        shutdown();
+        synchronized(this) {
+            if(succeeded)
+                return result;
+            if(failed)
+                throw Utils.rethrow(failure);
+            throw new IllegalStateException(subtasks.isEmpty() ? "No subtasks forked" : "All subtasks have been cancelled");
+        }
+    }
+
+    /**
+     * Cancels all subtasks which are not done yet and interrupts running ones. Subtasks
+     * forked afterwards are cancelled immediately.
+     */
+    public void shutdown() {
+        List<Subtask<? extends T>> subtasks;
+        synchronized(this) {
+            shutdown = true;
+            subtasks = new ArrayList<>(this.subtasks);
+        }
+        for(Subtask<? extends T> subtask : subtasks)
+            subtask.cancel();
+    }
+
+    /**
+     * Returns whether the scope has been shut down, either explicitly or because of a failed
+     * subtask or a result of {@link #joinAny()}.
+     *
+     * @return Whether the scope has been shut down
+     */
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Shuts the scope down and waits until no subtask is running anymore. No more subtasks
+     * can be forked afterwards.
+     */
+    @Override
+    @Blocking
+    public void close() {
+        synchronized(this) {
+            if(closed) return;
+            closed = true;
+        }
+        shutdown();
+        boolean interrupted = false;
+        synchronized(this) {
+            while(active != 0) {
+                try {
+                    wait();
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Waits until the given condition, which is evaluated while holding the monitor of
+     * this scope, is fulfilled. If the thread gets interrupted while waiting, the scope
+     * is shut down and the interrupt is rethrown.
+     */
+    private void await(BooleanSupplier condition) {
+        try {
+            synchronized(this) {
+                while(!condition.getAsBoolean())
+                    wait();
+            }
+        } catch(InterruptedException e) {
+            shutdown();
+            throw Utils.rethrow(e);
+        }
+    }
+
+    /**
+     * Starts queued subtasks while permits are available.
+     */
+    private void drain() {
+        while(!queue.isEmpty() && permits.tryAcquire()) {
+            Subtask<?> subtask = queue.poll();
+            if(subtask == null) {
+                permits.release();
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        subtask.run();
+                    } finally {
+                        permits.release();
+                        drain();
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                permits.release();
+                subtask.future.tryFail(e);
+            }
+        }
+    }
+
+    private void done(Subtask<? extends T> subtask) {
+        boolean shutdownNow = false;
+        synchronized(this) {
+            pending--;
+            if(!shutdown) {
+                if(subtask.future.isCanceled()) {
+                    if(!failed) {
+                        failed = true;
+                        failure = subtask.future.failCause();
+                        if(failure == null)
+                            failure = new IllegalStateException("Subtask has been cancelled");
+                        shutdownNow = true;
+                    }
+                }
+                else if(!succeeded) {
+                    succeeded = true;
+                    result = subtask.future.get();
+                    shutdownNow = awaitingAny;
+                }
+            }
+            notifyAll();
+        }
+        if(shutdownNow)
+            shutdown();
+    }
+
+    private synchronized void runStarted() {
+        active++;
+    }
+
+    private synchronized void runFinished() {
+        active--;
+        notifyAll();
+    }
+
+
+    /**
+     * A forked computation and its future.
+     */
+    private final class Subtask<U extends T> {
+
+        final Computation<U> computation;
+        final ThreadedFutureImpl<U> future = new ThreadedFutureImpl<>();
+        /**
+         * The thread currently running the computation, guarded by this subtask.
+         */
+        Thread runner = null;
+
+        Subtask(Computation<U> computation) {
+            this.computation = computation;
+        }
+
+        void run() {
+            if(future.isDone()) return;
+            runStarted();
+            try {
+                synchronized(this) {
+                    runner = Thread.currentThread();
+                }
+                if(!future.isDone())
+                    computation.tryCompute(future::tryComplete, future::tryFail);
+            } finally {
+                synchronized(this) {
+                    runner = null;
+                    // Don't leak an interrupt from cancellation into the next task of the thread
+                    Thread.interrupted();
+                }
+                runFinished();
+            }
+        }
+
+        void cancel() {
+            if(!future.cancel()) return;
+            synchronized(this) {
+                if(runner != null)
+                    runner.interrupt();
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package de.rccookie.util;
 
 import java.util.concurrent.Executor;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
 
 import de.rccookie.util.function.Computation;
 
@@ -12,11 +12,27 @@ import de.rccookie.util.function.Computation;
  */
 public class ThreadedFutureImpl<V> extends AbstractFutureImpl<V> {
 
-    // TODO: Use pool that notices shutdown
-    public static final Executor DEFAULT_EXECUTOR
-            = r -> new Thread(r).start();//new AutoShutdownThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    /**
+     * The library-wide thread pool used to run computations of futures, unless a different
+     * executor was set using {@link #setDefaultExecutor(Executor)}. The maximum number of threads
+     * can be configured using {@link DaemonThreadPool#setMaxThreads(int)}. The pool stops
+     * accepting tasks when the JVM shuts down, such that later computations run on threads of
+     * their own.
+     */
+    public static final DaemonThreadPool SHARED_POOL = new DaemonThreadPool(
+            "Future worker",
+            Math.max(64, 8 * Runtime.getRuntime().availableProcessors()),
+            30, TimeUnit.SECONDS
+    ).shutdownOnExit();
 
-    private final Object lock = new Object();
+    private static volatile Executor defaultExecutor = SHARED_POOL;
+
+    /**
+     * The executor used to run computations of futures if no executor is specified explicitly.
+     * Delegates to the executor set using {@link #setDefaultExecutor(Executor)}, which is
+     * {@link #SHARED_POOL} by default.
+     */
+    public static final Executor DEFAULT_EXECUTOR = r -> defaultExecutor.execute(r);
 
     public ThreadedFutureImpl() { }
 
@@ -24,131 +40,34 @@ public class ThreadedFutureImpl<V> extends AbstractFutureImpl<V> {
         this(computation, DEFAULT_EXECUTOR);
     }
 
-    protected ThreadedFutureImpl(Computation<V> computation, Executor executor) {
-        executor.execute(() -> computation.tryCompute(this::complete, this::fail));
+    public ThreadedFutureImpl(Computation<V> computation, Executor executor) {
+        Arguments.checkNull(computation, "computation");
+        Arguments.checkNull(executor, "executor");
+        executor.execute(() -> computation.tryCompute(this::tryComplete, this::tryFail));
     }
 
     /**
-     * Sets the result of the future.
+     * Returns the executor currently used by {@link #DEFAULT_EXECUTOR}.
      *
-     * @param value The result to set
-     * @throws IllegalStateException If the result is already set or
-     *                               the future has been cancelled
+     * @return The current default executor
      */
-    @Override
-    public void complete(V value) throws IllegalStateException {
-        synchronized(lock) {
-            if(done)
-                throw new IllegalStateException("The value cannot be set because the computation is already done");
-            this.value = value;
-            done = true;
-        }
-        for(Consumer<? super V> a : onThen)
-            a.accept(value);
-        onThen.clear();
-        onExcept.clear();
-        onDone();
-    }
-
-    @Override
-    public boolean fail(Exception cause) throws IllegalStateException {
-        synchronized(lock) {
-            if(canceled) return false;
-            if(done) throw new IllegalStateException("Result already computed");
-            canceled = done = true;
-        }
-        failCause = cause;
-        if(cause != null && onExcept.isEmpty()) {
-            Console.warn("Uncaught exception in future:");
-            Console.warn(cause);
-        }
-        else for(Consumer<? super Exception> handler : onExcept)
-            handler.accept(cause);
-        onDone();
-        return true;
-    }
-
-    private void onDone() {
-        synchronized(lock) {
-            lock.notifyAll();
-        }
-    }
-
-    @Override
-    public boolean cancel() {
-        boolean out;
-        synchronized(lock) {
-            out = !canceled && !done;
-            canceled = done = true;
-        }
-        failCause = null;
-        if(out) {
-            for(Consumer<? super Exception> handler : onExcept)
-                handler.accept(null);
-            onThen.clear();
-            onExcept.clear();
-        }
-        onDone();
-        return out;
-    }
-
-    @Override
-    public boolean isCanceled() {
-        synchronized(lock) {
-            return super.isCanceled();
-        }
-    }
-
-    @Override
-    public boolean isDone() {
-        synchronized(lock) {
-            return super.isDone();
-        }
-    }
-
-    @Override
-    public V get() throws IllegalStateException {
-        synchronized(lock) {
-            return super.get();
-        }
+    public static Executor getDefaultExecutor() {
+        return defaultExecutor;
     }
 
-    @Override
-    public Future<V> then(Consumer<? super V> action) {
-        Arguments.checkNull(action, "action");
-        synchronized(lock) {
-            if(!done) {
-                onThen.add(action);
-                return this;
-            }
-            else if(canceled) return this;
-        }
-        action.accept(value);
-        return this;
-    }
-
-    @Override
-    public Future<V> except(Consumer<? super Exception> handler) {
-        Arguments.checkNull(handler, "handler");
-        synchronized(this) {
-            if(!done) {
-                onExcept.add(handler);
-                return this;
-            }
-            else if(!canceled) return this;
-        }
-        handler.accept(failCause);
-        return this;
+    /**
+     * Sets the executor that {@link #DEFAULT_EXECUTOR} delegates to, and thus which runs the
+     * computations of all futures which were not given an executor explicitly.
+     *
+     * @param executor The executor to use, or <code>null</code> to use {@link #SHARED_POOL}
+     */
+    public static void setDefaultExecutor(Executor executor) {
+        defaultExecutor = executor != null ? executor : SHARED_POOL;
     }
 
     @Override
     public V waitFor() throws UnsupportedOperationException {
-        synchronized(lock) {
-            while(!done) {
-                try { lock.wait(); }
-                catch(InterruptedException ignored) { }
-            }
-        }
+        awaitDone();
         return get();
     }
 }
@@ -0,0 +1,146 @@
+package de.rccookie.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * W-TinyLFU eviction policy. New entries are inserted into a small LRU window taking
+ * about 1% of the capacity. The main space is a segmented LRU, consisting of a probation
+ * segment for entries which came from the window, and a protected segment taking 80% of
+ * the main space for entries which were used again while on probation. When the window
+ * overflows, its least recently used entry competes with the least recently used entry
+ * of the probation segment, and the one used less frequently according to a
+ * {@link FrequencySketch} gets evicted.
+ *
+ * @param <K> The key type
+ */
+final class TinyLfuEvictionPolicy<K> implements Cache.EvictionPolicy<K> {
+
+    /**
+     * Candidates with at most this frequency never win against a more frequent victim.
+     * More frequent candidates win occasionally, to prevent an attacker from keeping a
+     * victim in the cache by artificially raising its frequency through hash collisions.
+     */
+    private static final int WARM_CANDIDATE = 5;
+
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    // Keys in access order, mapped to their weight
+    private final LinkedHashMap<K,Long> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K,Long> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K,Long> protect = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long maxWindow, maxMain, maxProtected;
+    private long windowWeight = 0, probationWeight = 0, protectedWeight = 0;
+
+    @Override
+    public void initialize(long maxWeight) {
+        maxWindow = Math.max(1, maxWeight / 100);
+        maxMain = maxWeight - maxWindow;
+        maxProtected = maxMain - maxMain / 5;
+    }
+
+    @Override
+    public void onInsert(K key, long weight) {
+        sketch.ensureCapacity(size() + 1);
+        sketch.increment(key);
+        window.put(key, weight);
+        windowWeight += weight;
+    }
+
+    @Override
+    public void onAccess(K key) {
+        sketch.increment(key);
+        if(window.get(key) != null || protect.get(key) != null)
+            return;
+        Long weight = probation.remove(key);
+        if(weight == null)
+            return;
+        probationWeight -= weight;
+        protect.put(key, weight);
+        protectedWeight += weight;
+        // Demote the least recently used protected entries back to probation
+        while(protectedWeight > maxProtected && protect.size() > 1) {
+            K demoted = eldest(protect);
+            long w = protect.remove(demoted);
+            protectedWeight -= w;
+            probation.put(demoted, w);
+            probationWeight += w;
+        }
+    }
+
+    @Override
+    public void onUpdate(K key, long oldWeight, long newWeight) {
+        sketch.increment(key);
+        long delta = newWeight - oldWeight;
+        if(window.replace(key, newWeight) != null)
+            windowWeight += delta;
+        else if(probation.replace(key, newWeight) != null)
+            probationWeight += delta;
+        else if(protect.replace(key, newWeight) != null)
+            protectedWeight += delta;
+        else onInsert(key, newWeight);
+    }
+
+    @Override
+    public void onRemove(K key, long weight) {
+        Long w;
+        if((w = window.remove(key)) != null)
+            windowWeight -= w;
+        else if((w = probation.remove(key)) != null)
+            probationWeight -= w;
+        else if((w = protect.remove(key)) != null)
+            protectedWeight -= w;
+    }
+
+    @Override
+    public K selectVictim() {
+        while(windowWeight > maxWindow) {
+            // Not using get() which would count as access
+            Map.Entry<K,Long> eldest = window.entrySet().iterator().next();
+            K candidate = eldest.getKey();
+            long weight = eldest.getValue();
+            if(probationWeight + protectedWeight + weight <= maxMain) {
+                moveToProbation(candidate, weight);
+                continue;
+            }
+            K victim = probation.isEmpty() ? eldest(protect) : eldest(probation);
+            if(victim == null || !admit(candidate, victim))
+                return candidate;
+            moveToProbation(candidate, weight);
+            return victim;
+        }
+        // The window is within its bounds, so the main space must be too large
+        if(!probation.isEmpty()) return eldest(probation);
+        if(!protect.isEmpty()) return eldest(protect);
+        return eldest(window);
+    }
+
+    private int size() {
+        return window.size() + probation.size() + protect.size();
+    }
+
+    private void moveToProbation(K key, long weight) {
+        window.remove(key);
+        windowWeight -= weight;
+        probation.put(key, weight);
+        probationWeight += weight;
+    }
+
+    private boolean admit(K candidate, K victim) {
+        int candidateFrequency = sketch.frequency(candidate);
+        int victimFrequency = sketch.frequency(victim);
+        if(candidateFrequency > victimFrequency)
+            return true;
+        if(candidateFrequency <= WARM_CANDIDATE)
+            return false;
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private static <K> K eldest(LinkedHashMap<K,?> segment) {
+        Iterator<K> it = segment.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
@@ -961,16 +961,10 @@ public final class Utils {
     public static Future<Void> connect(InputStream in, OutputStream out) {
         Arguments.checkNull(in, "in");
         Arguments.checkNull(out, "out");
-        FutureImpl<Void> result = new ThreadedFutureImpl<>();
-        new Thread(() -> {
-            try {
-                in.transferTo(out);
-                result.complete(null);
-            } catch(Exception e) {
-                result.fail(e);
-            }
-        }).start();
-        return result;
+        return new ThreadedFutureImpl<>(() -> {
+            in.transferTo(out);
+            return null;
+        });
     }
 
 
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingBiConsumer<A, B, T extends Throwable> {
+    void accept(A a, B b) throws T;
+}
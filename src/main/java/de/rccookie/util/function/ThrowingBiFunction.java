@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingBiFunction<A, B, R, T extends Throwable> {
+    R apply(A a, B b) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntBiConsumer<T extends Throwable> {
+    void accept(int x, int y) throws T;
+}
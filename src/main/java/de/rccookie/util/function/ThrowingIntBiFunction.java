@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntBiFunction<R, T extends Throwable> {
+    R apply(int x, int y) throws T;
+}
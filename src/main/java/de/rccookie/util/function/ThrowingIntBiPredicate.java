@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntBiPredicate<T extends Throwable> {
+    boolean test(int x, int y) throws T;
+}
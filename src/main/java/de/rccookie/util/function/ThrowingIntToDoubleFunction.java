@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntToDoubleFunction<T extends Throwable> {
+    double applyAsDouble(int x) throws T;
+}
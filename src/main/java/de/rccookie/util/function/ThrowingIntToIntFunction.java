@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntToIntFunction<T extends Throwable> {
+    int applyAsInt(int x) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingIntToLongFunction<T extends Throwable> {
+    long applyAsLong(int x) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingLongToDoubleFunction<T extends Throwable> {
+    double applyAsDouble(long x) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingLongToIntFunction<T extends Throwable> {
+    int applyAsInt(long x) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingLongToLongFunction<T extends Throwable> {
+    long applyAsLong(long x) throws T;
+}
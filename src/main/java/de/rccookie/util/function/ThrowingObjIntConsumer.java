@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingObjIntConsumer<I, T extends Throwable> {
+    void accept(I x, int y) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingObjIntFunction<I, R, T extends Throwable> {
+    R apply(I x, int y) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingObjLongConsumer<I, T extends Throwable> {
+    void accept(I x, long y) throws T;
+}
@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingObjLongFunction<I, R, T extends Throwable> {
+    R apply(I x, long y) throws T;
+}
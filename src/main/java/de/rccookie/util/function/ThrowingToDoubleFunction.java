@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingToDoubleFunction<I, T extends Throwable> {
+    double applyAsDouble(I x) throws T;
+}
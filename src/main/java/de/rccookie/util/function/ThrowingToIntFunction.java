@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingToIntFunction<I, T extends Throwable> {
+    int applyAsInt(I x) throws T;
+}
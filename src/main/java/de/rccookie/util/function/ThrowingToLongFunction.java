@@ -0,0 +1,6 @@
+package de.rccookie.util.function;
+
+@FunctionalInterface
+public interface ThrowingToLongFunction<I, T extends Throwable> {
+    long applyAsLong(I x) throws T;
+}